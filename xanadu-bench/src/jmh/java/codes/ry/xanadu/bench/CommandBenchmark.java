@@ -0,0 +1,105 @@
+package codes.ry.xanadu.bench;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.command.Command;
+import codes.ry.xanadu.command.CommandContext;
+import codes.ry.xanadu.command.CommandInput;
+import codes.ry.xanadu.command.CommandParser;
+import codes.ry.xanadu.command.CommandResult;
+import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.MacroCommands;
+import codes.ry.xanadu.command.ReflectiveCommandProvider;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Parses, dispatches and macro-expands command lines against no-op commands. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandBenchmark {
+  private static final String[] LINES = {
+    "noop",
+    "add 1 2",
+    "say \"quoted argument with spaces\" plain",
+    "select * from some_table where id = 42 and name = 'x y'",
+    "draw rect 1 2 10 20"
+  };
+
+  private CommandService service;
+  private CommandContext context;
+  private NoopCommands noop;
+  private CommandInput addInput;
+  private CommandInput macroInput;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    noop = new NoopCommands();
+    MacroCommands macros = new MacroCommands();
+    service = new CommandService(List.of(noop, macros));
+    context =
+        new CommandContext(
+            new PrintWriter(Writer.nullWriter()),
+            Style.box(),
+            RenderService.defaults(),
+            service,
+            80,
+            24);
+    context.setAllowContinuation(false);
+    run("def addall add $1 $2 end");
+    run("def twice addall $1 $2 end");
+    addInput = CommandParser.parse("add 3 4");
+    macroInput = CommandParser.parse("twice 5 6");
+  }
+
+  @Benchmark
+  public int parse() {
+    int sum = 0;
+    for (String line : LINES) {
+      sum += CommandParser.parse(line).args.size();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public CommandResult reflectiveDispatch() {
+    return service.find(addInput).get().execute(context);
+  }
+
+  @Benchmark
+  public CommandResult reflectiveDirect() {
+    return noop.commandFor(addInput).execute(context);
+  }
+
+  @Benchmark
+  public CommandResult macroExpansion() {
+    return service.find(macroInput).get().execute(context);
+  }
+
+  private void run(String line) {
+    Command command = service.find(CommandParser.parse(line)).orElseThrow();
+    command.execute(context);
+  }
+
+  public static final class NoopCommands extends ReflectiveCommandProvider {
+    public void noop() {}
+
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public void say(CommandContext context, String text, String more) {}
+
+    public void select(CommandContext context, String columns) {}
+  }
+}
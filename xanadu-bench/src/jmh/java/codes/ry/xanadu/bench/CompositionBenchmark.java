@@ -0,0 +1,82 @@
+package codes.ry.xanadu.bench;
+
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Rect;
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.StyledImages;
+import codes.ry.xanadu.TextStyle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Builds and rasterizes overlay/combine chains like the ones draw commands accumulate. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompositionBenchmark {
+  private static final int HEIGHT = 60;
+  private static final int WIDTH = 160;
+
+  @Param({"10", "100", "1000"})
+  public int depth;
+
+  private Style style;
+  private Image composed;
+  private char[] row;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    style = Style.box();
+    composed = compose();
+    row = new char[WIDTH];
+  }
+
+  @Benchmark
+  public Image build() {
+    return compose();
+  }
+
+  @Benchmark
+  public int readRows() {
+    int sum = 0;
+    for (int i = 0; i < HEIGHT; i++) {
+      composed.readRow(i, 0, WIDTH, row, 0);
+      sum += row[i % WIDTH];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int readCells() {
+    int sum = 0;
+    for (int i = 0; i < HEIGHT; i++) {
+      for (int j = 0; j < WIDTH; j++) {
+        sum += composed.at(i, j);
+      }
+    }
+    return sum;
+  }
+
+  private Image compose() {
+    Image image = Image.flood(' ');
+    for (int k = 0; k < depth; k++) {
+      int top = (k * 7) % (HEIGHT - 4);
+      int left = (k * 13) % (WIDTH - 8);
+      if (k % 3 == 0) {
+        Image label = StyledImages.withStyle(Image.text("#" + k), TextStyle.BOLD);
+        image = StyledImages.overlay(image, StyledImages.offset(label, top + 1, left + 1));
+      } else {
+        Image box = style.frame(2, 6).border().offset(top + 1, left + 1);
+        image = StyledImages.combine(image, box, style);
+      }
+    }
+    return image.bounded(new Rect(0, 0, HEIGHT, WIDTH));
+  }
+}
@@ -0,0 +1,96 @@
+package codes.ry.xanadu.bench;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.StyledImages;
+import codes.ry.xanadu.TextStyle;
+import codes.ry.xanadu.render.FrameEncoder;
+import codes.ry.xanadu.render.RenderContext;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Writes a wide bordered table through RenderContext.dump into a discarding writer. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DumpBenchmark {
+  @Param({"50", "500"})
+  public int rows;
+
+  // 0 forces the sequential path.
+  @Param({"0", "65536"})
+  public int parallelCells;
+
+  private Frame table;
+  private RenderContext context;
+  private PrintWriter out;
+  private FrameEncoder encoder;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Style style = Style.box();
+    Frame frame = null;
+    for (int r = 0; r < rows; r++) {
+      Frame row = null;
+      for (int c = 0; c < 10; c++) {
+        Image text = Image.text("r" + r + "c" + c);
+        if (r == 0) {
+          text = StyledImages.withStyle(text, TextStyle.BOLD);
+        }
+        Frame cell = style.frame(1, 18, text).border();
+        row = row == null ? cell : row.append(cell);
+      }
+      frame = frame == null ? row : frame.appendVertical(row);
+    }
+    table = frame;
+    context = new RenderContext(style, 0, 0, RenderService.defaults(), false, parallelCells);
+    out = new PrintWriter(Writer.nullWriter());
+    encoder = new FrameEncoder(new NullChannel());
+  }
+
+  @Benchmark
+  public void dump() {
+    context.dump(table, out);
+  }
+
+  @Benchmark
+  public void dumpMaterialized() {
+    context.dump(table.materialize(), out);
+  }
+
+  @Benchmark
+  public void encode() {
+    context.dump(table, encoder);
+  }
+
+  private static final class NullChannel implements WritableByteChannel {
+    @Override
+    public int write(ByteBuffer src) {
+      int n = src.remaining();
+      src.position(src.limit());
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
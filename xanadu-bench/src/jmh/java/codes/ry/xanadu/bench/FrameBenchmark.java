@@ -0,0 +1,71 @@
+package codes.ry.xanadu.bench;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Style;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Lays out a table of bordered cells with append, appendVertical and border. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameBenchmark {
+  @Param({"10", "100"})
+  public int rows;
+
+  @Param({"8"})
+  public int cols;
+
+  private Style style;
+  private Frame[] cells;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    style = Style.box();
+    cells = new Frame[cols];
+    for (int c = 0; c < cols; c++) {
+      cells[c] = style.text(12, "cell " + c);
+    }
+  }
+
+  @Benchmark
+  public Frame appendRow() {
+    return row();
+  }
+
+  @Benchmark
+  public Frame appendTable() {
+    Frame table = null;
+    for (int r = 0; r < rows; r++) {
+      Frame row = row();
+      table = table == null ? row : table.appendVertical(row);
+    }
+    return table;
+  }
+
+  @Benchmark
+  public Frame borderNested() {
+    Frame frame = cells[0];
+    for (int r = 0; r < rows; r++) {
+      frame = frame.border();
+    }
+    return frame;
+  }
+
+  private Frame row() {
+    Frame row = null;
+    for (Frame cell : cells) {
+      Frame bordered = cell.border();
+      row = row == null ? bordered : row.append(bordered);
+    }
+    return row;
+  }
+}
@@ -0,0 +1,126 @@
+package codes.ry.xanadu.bench;
+
+import static codes.ry.xanadu.Style.EAST;
+import static codes.ry.xanadu.Style.NORTH;
+import static codes.ry.xanadu.Style.SOUTH;
+import static codes.ry.xanadu.Style.WEST;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** The boxed {@code HashMap<Character, Integer>} glyph lookup Style used before, kept as a baseline. */
+final class LegacyStyle {
+  private final Map<Character, Integer> masks;
+  private final char[] glyphs;
+
+  private LegacyStyle(Map<Character, Integer> masks, char[] glyphs) {
+    this.masks = masks;
+    this.glyphs = glyphs;
+  }
+
+  char combine(char a, char b) {
+    if (a == ' ') {
+      return b;
+    }
+    if (b == ' ') {
+      return a;
+    }
+    Integer maskA = masks.get(a);
+    Integer maskB = masks.get(b);
+    if (maskA == null || maskB == null) {
+      return b;
+    }
+    int mask = maskA | maskB;
+    char combined = glyphs[mask];
+    return combined == 0 ? b : combined;
+  }
+
+  static LegacyStyle named(String name) {
+    switch (name) {
+      case "box":
+        return box();
+      case "doubleBox":
+        return doubleBox();
+      case "subcellBlocks":
+        return subcellBlocks();
+      case "fill":
+        return fill();
+      default:
+        throw new IllegalArgumentException("Unknown style: " + name);
+    }
+  }
+
+  static LegacyStyle box() {
+    Map<Character, Integer> masks = new HashMap<>();
+    char[] glyphs = new char[16];
+    glyphs[0] = ' ';
+    add(masks, glyphs, '─', EAST | WEST);
+    add(masks, glyphs, '│', NORTH | SOUTH);
+    add(masks, glyphs, '┌', EAST | SOUTH);
+    add(masks, glyphs, '┐', SOUTH | WEST);
+    add(masks, glyphs, '└', NORTH | EAST);
+    add(masks, glyphs, '┘', NORTH | WEST);
+    add(masks, glyphs, '├', NORTH | EAST | SOUTH);
+    add(masks, glyphs, '┤', NORTH | SOUTH | WEST);
+    add(masks, glyphs, '┬', EAST | SOUTH | WEST);
+    add(masks, glyphs, '┴', NORTH | EAST | WEST);
+    add(masks, glyphs, '┼', NORTH | EAST | SOUTH | WEST);
+    return new LegacyStyle(masks, glyphs);
+  }
+
+  static LegacyStyle doubleBox() {
+    Map<Character, Integer> masks = new HashMap<>();
+    char[] glyphs = new char[16];
+    glyphs[0] = ' ';
+    add(masks, glyphs, '═', EAST | WEST);
+    add(masks, glyphs, '║', NORTH | SOUTH);
+    add(masks, glyphs, '╔', EAST | SOUTH);
+    add(masks, glyphs, '╗', SOUTH | WEST);
+    add(masks, glyphs, '╚', NORTH | EAST);
+    add(masks, glyphs, '╝', NORTH | WEST);
+    add(masks, glyphs, '╠', NORTH | EAST | SOUTH);
+    add(masks, glyphs, '╣', NORTH | SOUTH | WEST);
+    add(masks, glyphs, '╦', EAST | SOUTH | WEST);
+    add(masks, glyphs, '╩', NORTH | EAST | WEST);
+    add(masks, glyphs, '╬', NORTH | EAST | SOUTH | WEST);
+    return new LegacyStyle(masks, glyphs);
+  }
+
+  static LegacyStyle subcellBlocks() {
+    Map<Character, Integer> masks = new HashMap<>();
+    char[] glyphs = new char[16];
+    glyphs[0] = ' ';
+    add(masks, glyphs, '▘', NORTH);
+    add(masks, glyphs, '▝', EAST);
+    add(masks, glyphs, '▖', SOUTH);
+    add(masks, glyphs, '▗', WEST);
+    add(masks, glyphs, '▀', NORTH | EAST);
+    add(masks, glyphs, '▌', NORTH | SOUTH);
+    add(masks, glyphs, '▐', EAST | WEST);
+    add(masks, glyphs, '▄', SOUTH | WEST);
+    add(masks, glyphs, '▚', NORTH | WEST);
+    add(masks, glyphs, '▞', EAST | SOUTH);
+    add(masks, glyphs, '▛', NORTH | EAST | SOUTH);
+    add(masks, glyphs, '▜', NORTH | EAST | WEST);
+    add(masks, glyphs, '▙', NORTH | SOUTH | WEST);
+    add(masks, glyphs, '▟', EAST | SOUTH | WEST);
+    add(masks, glyphs, '█', NORTH | EAST | SOUTH | WEST);
+    return new LegacyStyle(masks, glyphs);
+  }
+
+  static LegacyStyle fill() {
+    Map<Character, Integer> masks = new HashMap<>();
+    char[] glyphs = new char[16];
+    glyphs[0] = ' ';
+    for (int i = 1; i < glyphs.length; i++) {
+      glyphs[i] = '░';
+    }
+    masks.put('░', NORTH | EAST | SOUTH | WEST);
+    return new LegacyStyle(masks, glyphs);
+  }
+
+  private static void add(Map<Character, Integer> masks, char[] glyphs, char glyph, int mask) {
+    masks.put(glyph, mask);
+    glyphs[mask] = glyph;
+  }
+}
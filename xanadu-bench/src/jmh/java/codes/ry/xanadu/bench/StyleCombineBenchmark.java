@@ -0,0 +1,106 @@
+package codes.ry.xanadu.bench;
+
+import codes.ry.xanadu.Style;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Combines a fixed stream of glyph pairs with {@link Style#combine} and with the old boxed
+ * HashMap lookup. The stream mixes the style's own glyphs with blanks and plain text, roughly
+ * what a bordered layout feeds through combine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StyleCombineBenchmark {
+  private static final int PAIRS = 4096;
+
+  @Param({"box", "doubleBox", "subcellBlocks", "fill"})
+  public String style;
+
+  private Style current;
+  private LegacyStyle legacy;
+  private char[] a;
+  private char[] b;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    current = styleNamed(style);
+    legacy = LegacyStyle.named(style);
+    String glyphs = glyphsOf(style);
+    String other = " ax1";
+    SplittableRandom random = new SplittableRandom(42);
+    a = new char[PAIRS];
+    b = new char[PAIRS];
+    for (int k = 0; k < PAIRS; k++) {
+      a[k] = pick(random, glyphs, other);
+      b[k] = pick(random, glyphs, other);
+    }
+  }
+
+  @Benchmark
+  public int primitiveTables() {
+    Style s = current;
+    int sum = 0;
+    for (int k = 0; k < PAIRS; k++) {
+      sum += s.combine(a[k], b[k]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int boxedHashMap() {
+    LegacyStyle s = legacy;
+    int sum = 0;
+    for (int k = 0; k < PAIRS; k++) {
+      sum += s.combine(a[k], b[k]);
+    }
+    return sum;
+  }
+
+  private static char pick(SplittableRandom random, String glyphs, String other) {
+    if (random.nextInt(4) == 0) {
+      return other.charAt(random.nextInt(other.length()));
+    }
+    return glyphs.charAt(random.nextInt(glyphs.length()));
+  }
+
+  private static String glyphsOf(String name) {
+    switch (name) {
+      case "box":
+        return "─│┌┐└┘├┤┬┴┼";
+      case "doubleBox":
+        return "═║╔╗╚╝╠╣╦╩╬";
+      case "subcellBlocks":
+        return "▘▝▖▗▀▌▐▄▚▞▛▜▙▟█";
+      case "fill":
+        return "░";
+      default:
+        throw new IllegalArgumentException("Unknown style: " + name);
+    }
+  }
+
+  private static Style styleNamed(String name) {
+    switch (name) {
+      case "box":
+        return Style.box();
+      case "doubleBox":
+        return Style.doubleBox();
+      case "subcellBlocks":
+        return Style.subcellBlocks();
+      case "fill":
+        return Style.fill();
+      default:
+        throw new IllegalArgumentException("Unknown style: " + name);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package codes.ry.xanadu.jdbc;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.command.CommandContext;
+import codes.ry.xanadu.command.CommandParser;
+import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.render.RenderService;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Renders and moves an in-memory H2 table through JdbcTableRenderer and the CSV commands. Lives
+ * in the jdbc package to reach the renderer and session directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JdbcBenchmark {
+  @Param({"10000"})
+  public int rows;
+
+  // 0 renders the whole result as one batch; 24 mimics a terminal-sized fetch.
+  @Param({"0", "24"})
+  public int maxHeight;
+
+  private Connection connection;
+  private CommandContext context;
+  private JdbcCsvCommands csv;
+  private Path csvFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException, IOException {
+    connection = DriverManager.getConnection("jdbc:h2:mem:bench" + System.nanoTime(), "sa", "");
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(
+          "CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(40), price DECIMAL(10,2),"
+              + " note VARCHAR(80))");
+      statement.execute("CREATE TABLE items_copy (id INT, name VARCHAR(40), price DECIMAL(10,2),"
+          + " note VARCHAR(80))");
+    }
+    try (PreparedStatement insert =
+        connection.prepareStatement("INSERT INTO items VALUES (?, ?, ?, ?)")) {
+      for (int i = 0; i < rows; i++) {
+        insert.setInt(1, i);
+        insert.setString(2, "item " + i);
+        insert.setBigDecimal(3, java.math.BigDecimal.valueOf(i * 7L, 2));
+        insert.setString(4, i % 5 == 0 ? null : "note for item number " + i);
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    }
+    context =
+        new CommandContext(
+            new PrintWriter(Writer.nullWriter()),
+            Style.box(),
+            RenderService.defaults(),
+            new CommandService(List.of()),
+            120,
+            maxHeight);
+    context.setAllowContinuation(false);
+    JdbcSession.setConnection(context, connection);
+    csv = new JdbcCsvCommands();
+    csvFile = Files.createTempFile("xanadu-bench", ".csv");
+    run("extract " + csvFile + " --header SELECT * FROM items");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws SQLException, IOException {
+    connection.close();
+    Files.deleteIfExists(csvFile);
+  }
+
+  @Benchmark
+  public void renderTable() throws SQLException {
+    try (Statement statement = connection.createStatement();
+        ResultSet rs = statement.executeQuery("SELECT * FROM items")) {
+      new JdbcTableRenderer(context).render(rs);
+    }
+  }
+
+  @Benchmark
+  public void extractCsv() {
+    run("extract items --header");
+  }
+
+  @Benchmark
+  public void loadCsv() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("TRUNCATE TABLE items_copy");
+    }
+    run("load items_copy " + csvFile + " --header");
+  }
+
+  private void run(String line) {
+    csv.commandFor(CommandParser.parse(line)).execute(context);
+  }
+}
@@ -0,0 +1,57 @@
+package codes.ry.xanadu;
+
+import codes.ry.xanadu.command.Threads;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Client for a {@link Server}: forwards input to the session as it is typed and copies whatever
+ * the session writes back, until the server ends the session. Bytes pass through untouched, so
+ * prompts and rendered frames appear as the server wrote them.
+ */
+public final class Attach {
+  private Attach() {}
+
+  public static void run(Path socket, InputStream in, OutputStream out) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      // Reading and writing use the channel directly; the Channels streams would serialize them.
+      Threads.start(
+          "xanadu-attach",
+          () -> {
+            try {
+              send(in, channel);
+            } catch (IOException e) {
+              // The session ended while input was still coming.
+            }
+          });
+      receive(channel, out);
+    }
+  }
+
+  private static void send(InputStream in, SocketChannel channel) throws IOException {
+    byte[] bytes = new byte[8192];
+    int n;
+    while ((n = in.read(bytes)) >= 0) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, n);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    // End of input ends the session once the server has run what was sent.
+    channel.shutdownOutput();
+  }
+
+  private static void receive(SocketChannel channel, OutputStream out) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 14);
+    while (channel.read(buffer) >= 0) {
+      out.write(buffer.array(), 0, buffer.position());
+      out.flush();
+      buffer.clear();
+    }
+  }
+}
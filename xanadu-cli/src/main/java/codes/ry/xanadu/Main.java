@@ -2,6 +2,7 @@ package codes.ry.xanadu;
 
 import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.render.FrameEncoder;
 import codes.ry.xanadu.render.RenderContext;
 import codes.ry.xanadu.render.RenderService;
 import java.io.PrintWriter;
@@ -11,20 +12,55 @@ import java.util.ServiceLoader;
 public class Main {
 
   public static void main(String []arg) {
-    PrintWriter w = new PrintWriter(System.out);
+    if (arg.length > 0 && arg[0].equals("--attach")) {
+      attach(socketArg(arg));
+      return;
+    }
     List<codes.ry.xanadu.command.CommandProvider> providers = new java.util.ArrayList<>();
     ServiceLoader.load(codes.ry.xanadu.command.CommandProvider.class).forEach(providers::add);
     CommandService commandService = new CommandService(providers);
+    if (arg.length > 0 && arg[0].equals("--serve")) {
+      serve(socketArg(arg), commandService);
+      return;
+    }
+    PrintWriter w = new PrintWriter(System.out);
     CommandContext commandContext = new CommandContext(w, Style.box(), RenderService.defaults(), commandService, 40, 8);
+    commandContext.setFrameEncoder(FrameEncoder.stdout());
     loadStartupScript(commandContext);
     Repl repl = new Repl(commandContext, Repl.defaultReader(commandContext), w);
     try {
       repl.run();
     } catch (java.io.IOException e) {
       throw new RuntimeException("REPL failed", e);
+    } finally {
+      commandContext.close();
+    }
+  }
+
+  private static void serve(java.nio.file.Path socket, CommandService commandService) {
+    try (Server server =
+        new Server(socket, commandService, RenderService.defaults(), Main::loadStartupScript)) {
+      System.err.println("Serving on " + socket);
+      server.run();
+    } catch (java.io.IOException e) {
+      System.err.println("Server failed: " + e.getMessage());
+      System.exit(1);
     }
   }
 
+  private static void attach(java.nio.file.Path socket) {
+    try {
+      Attach.run(socket, System.in, System.out);
+    } catch (java.io.IOException e) {
+      System.err.println("Cannot attach to " + socket + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static java.nio.file.Path socketArg(String[] arg) {
+    return arg.length > 1 ? java.nio.file.Path.of(arg[1]) : Server.defaultSocket();
+  }
+
   private static void loadStartupScript(CommandContext context) {
     java.nio.file.Path homePath = homeRc();
     java.nio.file.Path localPath = java.nio.file.Path.of(".xanadurc");
@@ -36,14 +72,16 @@ public class Main {
     if (path == null || !java.nio.file.Files.exists(path)) {
       return;
     }
-    java.util.List<String> lines;
+    boolean ok;
     try {
-      lines = java.nio.file.Files.readAllLines(path);
+      ok = codes.ry.xanadu.command.ScriptRunner.run(context, path);
     } catch (java.io.IOException e) {
       context.warn("Failed to read " + path + ": " + e.getMessage());
       return;
+    } catch (java.io.UncheckedIOException e) {
+      context.warn("Failed to read " + path + ": " + e.getCause().getMessage());
+      return;
     }
-    boolean ok = codes.ry.xanadu.command.ScriptRunner.run(context, lines);
     if (!ok) {
       context.warn("Startup script failed for " + path + ".");
     }
@@ -1,13 +1,12 @@
 package codes.ry.xanadu;
 
 import codes.ry.xanadu.command.CommandContext;
-import codes.ry.xanadu.command.CommandInput;
-import codes.ry.xanadu.command.CommandParser;
 import codes.ry.xanadu.command.CommandNames;
 import codes.ry.xanadu.command.CommandResult;
+import codes.ry.xanadu.command.Job;
+import codes.ry.xanadu.command.ScriptPlan;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Optional;
 import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
 import org.jline.reader.EndOfFileException;
@@ -32,13 +31,10 @@ public final class Repl {
 
   public void run() throws IOException {
     while (true) {
+      announceEndedJobs(context, out);
       String line;
       try {
-        String prompt = "> ";
-        if (context.continuation() != null) {
-          prompt = context.continuation().commandName + " > ";
-        }
-        line = reader.readLine(prompt);
+        line = reader.readLine(prompt(context));
       } catch (UserInterruptException e) {
         context.cancelCurrentCommand();
         context.clearContinuation();
@@ -46,52 +42,50 @@ public final class Repl {
       } catch (EndOfFileException e) {
         return;
       }
+      context.setSize(reader.getTerminal().getWidth(), reader.getTerminal().getHeight());
+      if (!accept(context, line)) {
+        return;
+      }
+    }
+  }
+
+  static String prompt(CommandContext context) {
+    if (context.continuation() != null) {
+      return context.continuation().commandName + " > ";
+    }
+    return "> ";
+  }
+
+  static void announceEndedJobs(CommandContext context, PrintWriter out) {
+    for (Job job : context.jobs().drainEnded()) {
+      out.println(
+          "[" + job.id + "] " + job.state().name().toLowerCase(java.util.Locale.ROOT) + "  "
+              + job.description);
+    }
+    out.flush();
+  }
+
+  // Handles one line typed at the prompt; false once the line asked to exit.
+  static boolean accept(CommandContext context, String line) {
+    try {
       if (context.continuation() != null) {
         if (line.isBlank()) {
           context.clearContinuation();
-          continue;
-        }
-        try {
-          handleContinuation(line);
-        } catch (ExitSignal exit) {
-          return;
+        } else {
+          handleContinuation(context, line);
         }
-        continue;
+        return true;
       }
-      CommandInput input = CommandParser.parse(line);
-      if (input == null) {
-        continue;
-      }
-      Optional<codes.ry.xanadu.command.Command> command = context.commandService().find(input);
-      if (command.isEmpty()) {
-        context.error("Unknown command: " + input.name);
-        continue;
-      }
-      context.setSize(reader.getTerminal().getWidth(), reader.getTerminal().getHeight());
-      context.resetFailure();
-      try {
-        CommandResult result = command.get().execute(context);
-        if (result != null && result.isFailure()) {
-          context.clearContinuation();
-        }
-      } catch (ExitSignal exit) {
-        return;
-      } catch (RuntimeException e) {
-        if (isExitSignal(e)) {
-          return;
-        }
-        context.recordException(e);
-        context.error("Command failed: " + e.getMessage());
-        String trace = context.formatStackTrace(e);
-        if (!trace.isEmpty()) {
-          context.debug(trace);
-        }
-        context.clearContinuation();
+      if (!line.isBlank()) {
+        execute(context, line);
       }
+      return true;
+    } catch (ExitSignal exit) {
+      return false;
     }
   }
 
-  private void handleContinuation(String line) {
+  private static void handleContinuation(CommandContext context, String line) {
     var continuation = context.continuation();
     if (continuation == null) {
       return;
@@ -101,44 +95,36 @@ public final class Repl {
       return;
     }
     if (result.tail != null) {
-      String combined = continuation.commandName + " " + result.tail;
-      CommandInput input = CommandParser.parse(combined);
-      if (input == null) {
-        context.error("Unknown command: " + continuation.commandName);
-      } else {
-        context.setSize(reader.getTerminal().getWidth(), reader.getTerminal().getHeight());
-        Optional<codes.ry.xanadu.command.Command> command = context.commandService().find(input);
-        if (command.isEmpty()) {
-          context.error("Unknown command: " + input.name);
-        } else {
-          context.resetFailure();
-          try {
-            CommandResult result2 = command.get().execute(context);
-            if (result2 != null && result2.isFailure()) {
-              context.clearContinuation();
-            }
-          } catch (ExitSignal exit) {
-            throw exit;
-          } catch (RuntimeException e) {
-            if (isExitSignal(e)) {
-              throw new ExitSignal();
-            }
-            context.recordException(e);
-            context.error("Command failed: " + e.getMessage());
-            String trace = context.formatStackTrace(e);
-            if (!trace.isEmpty()) {
-              context.debug(trace);
-            }
-            context.clearContinuation();
-          }
-        }
-      }
+      execute(context, continuation.commandName + " " + result.tail);
     }
     if (!result.continueAfter) {
       context.clearContinuation();
     }
   }
 
+  private static void execute(CommandContext context, String line) {
+    context.resetFailure();
+    try {
+      CommandResult result = ScriptPlan.executeLine(context, line);
+      if (result != null && result.isFailure()) {
+        context.clearContinuation();
+      }
+    } catch (ExitSignal exit) {
+      throw exit;
+    } catch (RuntimeException e) {
+      if (isExitSignal(e)) {
+        throw new ExitSignal();
+      }
+      context.recordException(e);
+      context.error("Command failed: " + e.getMessage());
+      String trace = context.formatStackTrace(e);
+      if (!trace.isEmpty()) {
+        context.debug(trace);
+      }
+      context.clearContinuation();
+    }
+  }
+
   public static LineReader defaultReader(CommandContext context) {
     return LineReaderBuilder.builder()
         .completer(new CommandCompleter(context))
@@ -0,0 +1,169 @@
+package codes.ry.xanadu;
+
+import codes.ry.xanadu.command.CommandContext;
+import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.Job;
+import codes.ry.xanadu.command.Threads;
+import codes.ry.xanadu.render.FrameEncoder;
+import codes.ry.xanadu.render.RenderService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Console server on a Unix domain socket. Every connection is a session with its own {@link
+ * CommandContext}, run like the REPL on a thread of its own (a virtual thread where the runtime
+ * has them), while all sessions share one {@link CommandService} and {@link RenderService}, and
+ * so the providers' drivers and caches; only providers that keep per-session state, such as
+ * macros, get a fresh instance per session through {@link CommandService#forSession}. Lines
+ * read from the socket are commands; prompts, text and rendered frames are written back to it.
+ */
+public final class Server implements AutoCloseable {
+  public static final int DEFAULT_WIDTH = 80;
+  public static final int DEFAULT_HEIGHT = 24;
+
+  private final Path socket;
+  private final ServerSocketChannel channel;
+  private final CommandService commandService;
+  private final RenderService renderService;
+  private final Consumer<CommandContext> setup;
+  private final Set<SocketChannel> sessions = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  // Binds the socket; setup runs on each new session's context before its first line.
+  public Server(
+      Path socket,
+      CommandService commandService,
+      RenderService renderService,
+      Consumer<CommandContext> setup)
+      throws IOException {
+    this.socket = socket;
+    this.commandService = commandService;
+    this.renderService = renderService;
+    this.setup = setup;
+    removeStaleSocket(socket);
+    this.channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    channel.bind(UnixDomainSocketAddress.of(socket));
+  }
+
+  public static Path defaultSocket() {
+    String home = System.getProperty("user.home");
+    if (home == null || home.isBlank()) {
+      return Path.of(".xanadu.sock");
+    }
+    return Path.of(home, ".xanadu.sock");
+  }
+
+  public Path socket() {
+    return socket;
+  }
+
+  public int sessions() {
+    return sessions.size();
+  }
+
+  // Accepts connections until the server is closed.
+  public void run() {
+    while (!closed) {
+      SocketChannel connection;
+      try {
+        connection = channel.accept();
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        if (closed) {
+          return;
+        }
+        throw new UncheckedIOException(e);
+      }
+      sessions.add(connection);
+      Threads.start("xanadu-session", () -> session(connection));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    channel.close();
+    for (SocketChannel connection : sessions) {
+      connection.close();
+    }
+    Files.deleteIfExists(socket);
+  }
+
+  private void session(SocketChannel connection) {
+    PrintWriter out = new PrintWriter(Channels.newWriter(connection, StandardCharsets.UTF_8));
+    CommandContext context =
+        new CommandContext(
+            out,
+            Style.box(),
+            renderService,
+            commandService.forSession(),
+            DEFAULT_WIDTH,
+            DEFAULT_HEIGHT);
+    context.setFrameEncoder(new FrameEncoder(connection));
+    try {
+      BufferedReader in =
+          new BufferedReader(Channels.newReader(connection, StandardCharsets.UTF_8));
+      setup.accept(context);
+      while (true) {
+        Repl.announceEndedJobs(context, out);
+        out.print(Repl.prompt(context));
+        out.flush();
+        String line = in.readLine();
+        if (line == null || !Repl.accept(context, line)) {
+          break;
+        }
+      }
+      out.flush();
+    } catch (IOException | UncheckedIOException e) {
+      // The client went away; nothing is left to report to.
+    } finally {
+      for (Job job : context.jobs().list()) {
+        job.kill();
+      }
+      try {
+        context.close();
+      } catch (RuntimeException e) {
+        // Released what it could; the client is gone either way.
+      }
+      // Unregistered before the close, so a client that sees the end also sees the count drop.
+      sessions.remove(connection);
+      try {
+        connection.close();
+      } catch (IOException e) {
+        // Already gone.
+      }
+    }
+  }
+
+  // A socket file left by a server that is gone would fail the bind; one still answering is kept.
+  private static void removeStaleSocket(Path socket) throws IOException {
+    if (!Files.exists(socket)) {
+      return;
+    }
+    boolean live;
+    try (SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      live = true;
+    } catch (IOException e) {
+      live = false;
+    }
+    if (live) {
+      throw new IOException("A server is already listening on " + socket);
+    }
+    Files.deleteIfExists(socket);
+  }
+}
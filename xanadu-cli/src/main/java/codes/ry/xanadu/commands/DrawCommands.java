@@ -2,12 +2,14 @@ package codes.ry.xanadu.commands;
 
 import codes.ry.xanadu.Frame;
 import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Rect;
 import codes.ry.xanadu.StyledImages;
 import codes.ry.xanadu.Style;
 import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
 import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandResult;
+import codes.ry.xanadu.command.ContextKey;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -15,11 +17,13 @@ import java.util.Map;
 
 public final class DrawCommands implements CommandProvider {
   private static final String COMMAND = "draw";
-  private static final String BUFFER_KEY = "draw.buffer";
-  private static final String TURTLE_KEY = "draw.turtle";
+  private static final ContextKey<Image> BUFFER = ContextKey.of("draw.buffer", Image.class);
+  private static final ContextKey<TurtleState> TURTLE =
+      ContextKey.of("draw.turtle", TurtleState.class);
   private static final Style BOX_STYLE = Style.box();
   private static final Style SUBCELL_STYLE = Style.subcellBlocks();
   private static final char POINT_GLYPH = '█';
+  private static final int TILE_SIZE = 32;
 
   @Override
   public boolean supports(CommandInput input) {
@@ -145,7 +149,7 @@ public final class DrawCommands implements CommandProvider {
       return;
     }
     Image point = (i, j) -> (i == row && j == col) ? POINT_GLYPH : ' ';
-    overlay(context, point);
+    overlay(context, point.bounded(new Rect(row, col, 1, 1)));
   }
 
   private void drawLine(CommandContext context, List<String> args) {
@@ -219,10 +223,9 @@ public final class DrawCommands implements CommandProvider {
       usageError(context, "draw show <height> <width>");
       return;
     }
-    Image buffer = buffer(context);
-    Frame frame = new Frame(height, width, buffer, context.style);
-    frame.dump(context.out);
-    context.out.flush();
+    // Later draw ops layer over the cached buffer, so the next show reuses its tiles.
+    Image buffer = context.compute(BUFFER, current -> orBlank(current).cached(TILE_SIZE));
+    context.render(new Frame(height, width, buffer, context.style));
   }
 
   private void drawClear(CommandContext context, List<String> args) {
@@ -230,7 +233,7 @@ public final class DrawCommands implements CommandProvider {
       usageError(context, "draw clear");
       return;
     }
-    context.put(BUFFER_KEY, Image.flood(' '));
+    replaceBuffer(context, base -> Image.flood(' '));
   }
 
   private void turtlePen(CommandContext context, List<String> args) {
@@ -343,22 +346,28 @@ public final class DrawCommands implements CommandProvider {
   }
 
   private void overlay(CommandContext context, Image overlay) {
-    Image base = buffer(context);
-    context.put(BUFFER_KEY, StyledImages.overlay(base, overlay));
+    replaceBuffer(context, base -> StyledImages.overlay(orBlank(base), overlay));
   }
 
   private void overlayWithStyle(CommandContext context, Image overlay, Style style) {
-    Image base = buffer(context);
-    context.put(BUFFER_KEY, StyledImages.combine(base, overlay, style));
+    replaceBuffer(context, base -> StyledImages.combine(orBlank(base), overlay, style));
   }
 
-  private Image buffer(CommandContext context) {
-    Image buffer = context.get(BUFFER_KEY, Image.class);
-    if (buffer == null) {
-      buffer = Image.flood(' ');
-      context.put(BUFFER_KEY, buffer);
-    }
-    return buffer;
+  private static void replaceBuffer(
+      CommandContext context, java.util.function.UnaryOperator<Image> update) {
+    Image[] previous = new Image[1];
+    context.compute(
+        BUFFER,
+        base -> {
+          previous[0] = base;
+          return update.apply(base);
+        });
+    // What show rendered from the old buffer is never shown again.
+    context.invalidateRender(previous[0]);
+  }
+
+  private static Image orBlank(Image buffer) {
+    return buffer == null ? Image.flood(' ') : buffer;
   }
 
   private static Integer parseInt(String raw) {
@@ -400,7 +409,7 @@ public final class DrawCommands implements CommandProvider {
   private static Image rectImage(int top, int left, int height, int width, Style style) {
     int bottom = top + height - 1;
     int right = left + width - 1;
-    return (i, j) -> {
+    Image rect = (i, j) -> {
       if (i < top || i > bottom || j < left || j > right) {
         return ' ';
       }
@@ -422,6 +431,7 @@ public final class DrawCommands implements CommandProvider {
       }
       return mask == 0 ? ' ' : style.glyph(mask);
     };
+    return rect.bounded(new Rect(top, left, height, width));
   }
 
   private static Image straightLineImage(int row1, int col1, int row2, int col2, Style style) {
@@ -429,16 +439,20 @@ public final class DrawCommands implements CommandProvider {
     int maxRow = Math.max(row1, row2);
     int minCol = Math.min(col1, col2);
     int maxCol = Math.max(col1, col2);
+    Rect bounds = new Rect(minRow, minCol, maxRow - minRow + 1, maxCol - minCol + 1);
+    Image line;
     if (row1 == row2) {
       int row = row1;
       int mask = Style.EAST | Style.WEST;
       char glyph = style.glyph(mask);
-      return (i, j) -> (i == row && j >= minCol && j <= maxCol) ? glyph : ' ';
+      line = (i, j) -> (i == row && j >= minCol && j <= maxCol) ? glyph : ' ';
+    } else {
+      int col = col1;
+      int mask = Style.NORTH | Style.SOUTH;
+      char glyph = style.glyph(mask);
+      line = (i, j) -> (j == col && i >= minRow && i <= maxRow) ? glyph : ' ';
     }
-    int col = col1;
-    int mask = Style.NORTH | Style.SOUTH;
-    char glyph = style.glyph(mask);
-    return (i, j) -> (j == col && i >= minRow && i <= maxRow) ? glyph : ' ';
+    return line.bounded(bounds);
   }
 
   private static Image aaLineImage(int row1, int col1, int row2, int col2, Style style) {
@@ -497,7 +511,7 @@ public final class DrawCommands implements CommandProvider {
     int finalMaxRow = maxRow;
     int finalMinCol = minCol;
     int finalMaxCol = maxCol;
-    return (i, j) -> {
+    Image line = (i, j) -> {
       if (i < finalMinRow || i > finalMaxRow || j < finalMinCol || j > finalMaxCol) {
         return ' ';
       }
@@ -507,6 +521,7 @@ public final class DrawCommands implements CommandProvider {
       }
       return style.glyph(mask);
     };
+    return line.bounded(new Rect(minRow, minCol, maxRow - minRow + 1, maxCol - minCol + 1));
   }
 
   private static int subcellMask(int y, int x) {
@@ -543,11 +558,6 @@ public final class DrawCommands implements CommandProvider {
   }
 
   private TurtleState turtle(CommandContext context) {
-    TurtleState turtle = context.get(TURTLE_KEY, TurtleState.class);
-    if (turtle == null) {
-      turtle = new TurtleState();
-      context.put(TURTLE_KEY, turtle);
-    }
-    return turtle;
+    return context.computeIfAbsent(TURTLE, TurtleState::new);
   }
 }
@@ -1,16 +1,34 @@
 package codes.ry.xanadu.commands;
 
+import codes.ry.xanadu.Frame;
 import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.CommandStats;
+import codes.ry.xanadu.command.Job;
+import codes.ry.xanadu.command.LatencyHistogram;
 import codes.ry.xanadu.command.ReflectiveCommandProvider;
+import codes.ry.xanadu.render.RenderCache;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
 
 public final class SystemCommands extends ReflectiveCommandProvider {
+  private static final long KILL_WAIT_MILLIS = 1000;
+  private static final List<String> STATS_COLUMNS =
+      List.of("command", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "bytes");
+
+  // Flight recording controlled by profile; one for the JVM, whichever session started it.
+  private Recording recording;
+
   public void quit(CommandContext context) {
     throw new codes.ry.xanadu.Repl.ExitSignal();
   }
@@ -142,6 +160,333 @@ public final class SystemCommands extends ReflectiveCommandProvider {
     context.out.flush();
   }
 
+  public void render(CommandContext context) {
+    context.out.println(
+        "Render budget: "
+            + limit(context.renderCellBudget(), " cells")
+            + ", "
+            + limit(context.renderTimeoutMillis(), " ms"));
+    int parallel = context.parallelRenderCells();
+    context.out.println(
+        "Parallel rendering: " + (parallel == 0 ? "off" : "frames of " + parallel + "+ cells"));
+    context.out.flush();
+  }
+
+  public void render(CommandContext context, String setting, long value) {
+    if (value < 0) {
+      context.error("Render " + setting + " must not be negative: " + value);
+      return;
+    }
+    switch (setting.toLowerCase(java.util.Locale.ROOT)) {
+      case "cells":
+        context.setRenderBudget(value, context.renderTimeoutMillis());
+        break;
+      case "timeout":
+        context.setRenderBudget(context.renderCellBudget(), value);
+        break;
+      case "parallel":
+        context.setParallelRenderCells((int) Math.min(value, Integer.MAX_VALUE));
+        break;
+      default:
+        context.error("Unknown render setting: " + setting);
+        context.out.println("Available settings: cells, timeout, parallel");
+        context.out.flush();
+        return;
+    }
+    render(context);
+  }
+
+  private static String limit(long value, String unit) {
+    return value == 0 ? "unlimited" : value + unit;
+  }
+
+  public void rendercache(CommandContext context) {
+    RenderCache cache = context.renderCache();
+    if (cache == null) {
+      context.out.println("Render cache: off");
+      context.out.flush();
+      return;
+    }
+    context.out.println(
+        "Render cache: "
+            + cache.size()
+            + " entries, "
+            + cache.sizeBytes()
+            + " of "
+            + cache.capacityBytes()
+            + " bytes, "
+            + cache.hits()
+            + " hits, "
+            + cache.misses()
+            + " misses");
+    context.out.flush();
+  }
+
+  public void rendercache(CommandContext context, String mode) {
+    switch (mode.toLowerCase(java.util.Locale.ROOT)) {
+      case "on":
+        if (context.renderCache() == null) {
+          context.setRenderCache(new RenderCache(RenderCache.DEFAULT_CAPACITY_BYTES));
+        }
+        context.out.println("Render cache on");
+        break;
+      case "off":
+        context.setRenderCache(null);
+        context.out.println("Render cache off");
+        break;
+      case "clear":
+        context.invalidateRenders();
+        context.out.println("Render cache cleared");
+        break;
+      default:
+        context.error("Unknown render cache mode: " + mode);
+        context.out.println("Available modes: on, off, clear");
+    }
+    context.out.flush();
+  }
+
+  public void jobs(CommandContext context) {
+    List<Job> jobs = context.jobs().list();
+    if (jobs.isEmpty()) {
+      context.out.println("No jobs.");
+    }
+    for (Job job : jobs) {
+      context.out.println(status(job) + "  " + job.elapsedMillis() + " ms  " + job.description);
+    }
+    context.out.flush();
+  }
+
+  public void wait(CommandContext context) {
+    for (Job job : context.jobs().list()) {
+      if (!await(context, job)) {
+        return;
+      }
+    }
+  }
+
+  public void wait(CommandContext context, int id) {
+    Job job = job(context, id);
+    if (job != null) {
+      await(context, job);
+    }
+  }
+
+  public void fg(CommandContext context, int id) {
+    Job job = job(context, id);
+    if (job == null) {
+      return;
+    }
+    int shown = 0;
+    while (true) {
+      // Read the state first so output printed just before the job ended is not missed.
+      boolean ended = !job.running();
+      String output = job.output(shown);
+      shown += output.length();
+      context.out.print(output);
+      context.out.flush();
+      if (ended) {
+        break;
+      }
+      if (context.consumeCancel()) {
+        job.kill();
+      }
+      if (!sleep(job, 50)) {
+        job.kill();
+      }
+    }
+    context.jobs().remove(job);
+    if (job.state() != Job.State.DONE) {
+      context.out.println(status(job) + "  " + job.description);
+      context.out.flush();
+    }
+  }
+
+  public void kill(CommandContext context, int id) {
+    Job job = job(context, id);
+    if (job == null) {
+      return;
+    }
+    job.kill();
+    // Give the job a moment to stop, so the state shown is the one it ended in.
+    try {
+      job.await(KILL_WAIT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    context.out.println(status(job) + "  " + job.description);
+    context.out.flush();
+    if (!job.running()) {
+      context.jobs().remove(job);
+    }
+  }
+
+  private static Job job(CommandContext context, int id) {
+    Job job = context.jobs().get(id);
+    if (job == null) {
+      context.error("No such job: " + id);
+    }
+    return job;
+  }
+
+  // Waits for the job to end, giving up when the wait is cancelled; false if it was.
+  private static boolean await(CommandContext context, Job job) {
+    while (job.running()) {
+      if (context.consumeCancel() || !sleep(job, 100)) {
+        context.warn("Stopped waiting for job " + job.id);
+        return false;
+      }
+    }
+    context.out.println(status(job) + "  " + job.description);
+    context.out.flush();
+    context.jobs().remove(job);
+    return true;
+  }
+
+  private static boolean sleep(Job job, long millis) {
+    try {
+      job.await(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static String status(Job job) {
+    return "[" + job.id + "] " + job.state().name().toLowerCase(java.util.Locale.ROOT);
+  }
+
+  public void stats(CommandContext context) {
+    Map<String, CommandStats.Entry> entries = context.commandService().stats().entries();
+    if (entries.isEmpty()) {
+      context.out.println("No command stats.");
+      context.out.flush();
+      return;
+    }
+    List<List<String>> columns = new ArrayList<>();
+    for (String header : STATS_COLUMNS) {
+      columns.add(new ArrayList<>(List.of(header)));
+    }
+    List<String> names = new ArrayList<>();
+    List<Float> p99s = new ArrayList<>();
+    for (CommandStats.Entry entry : entries.values()) {
+      LatencyHistogram latency = entry.latency;
+      long p99 = latency.percentile(0.99);
+      columns.get(0).add(entry.name);
+      columns.get(1).add(Long.toString(latency.count()));
+      columns.get(2).add(Long.toString(entry.errors()));
+      columns.get(3).add(millis(latency.percentile(0.50)));
+      columns.get(4).add(millis(latency.percentile(0.90)));
+      columns.get(5).add(millis(p99));
+      columns.get(6).add(millis(latency.max()));
+      columns.get(7).add(Long.toString(entry.renderedBytes()));
+      names.add(entry.name);
+      p99s.add(p99 / 1_000_000f);
+    }
+    Frame table = null;
+    for (List<String> column : columns) {
+      int width = 0;
+      for (String cell : column) {
+        width = Math.max(width, cell.length());
+      }
+      Frame header = context.style.text(width, column.get(0)).border();
+      Frame body = context.style.text(width, String.join("\n", column.subList(1, column.size())));
+      Frame frame = header.appendVertical(body.border());
+      table = table == null ? frame : table.append(frame);
+    }
+    context.render(table);
+    context.out.println("p99 ms");
+    context.render(VizCommands.labelledBars(context, names, p99s));
+  }
+
+  public void stats(CommandContext context, String mode) {
+    if (!mode.equalsIgnoreCase("reset")) {
+      context.error("Unknown stats mode: " + mode);
+      context.out.println("Available modes: reset");
+      context.out.flush();
+      return;
+    }
+    context.commandService().stats().reset();
+    context.out.println("Command stats reset");
+    context.out.flush();
+  }
+
+  public synchronized void profile(CommandContext context) {
+    if (recording == null) {
+      context.out.println("Profiling: off");
+    } else {
+      context.out.println(
+          "Profiling: "
+              + recording.getState().name().toLowerCase(java.util.Locale.ROOT)
+              + ", "
+              + recording.getSize()
+              + " bytes recorded");
+    }
+    context.out.flush();
+  }
+
+  public synchronized void profile(CommandContext context, String action) {
+    switch (action.toLowerCase(java.util.Locale.ROOT)) {
+      case "start":
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+          context.warn("Already profiling.");
+          return;
+        }
+        Recording next;
+        try {
+          next = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | java.text.ParseException e) {
+          context.error("Cannot load the recording settings: " + e.getMessage());
+          return;
+        }
+        if (recording != null) {
+          recording.close();
+        }
+        recording = next;
+        recording.setName("xanadu");
+        recording.start();
+        context.out.println("Profiling started");
+        break;
+      case "stop":
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+          context.error("Not profiling.");
+          return;
+        }
+        recording.stop();
+        context.out.println("Profiling stopped");
+        break;
+      default:
+        context.error("Unknown profile action: " + action);
+        context.out.println("Available actions: start, stop, dump <file>");
+    }
+    context.out.flush();
+  }
+
+  public synchronized void profile(CommandContext context, String action, String file) {
+    if (!action.equalsIgnoreCase("dump")) {
+      context.error("Unknown profile action: " + action);
+      context.out.println("Available actions: start, stop, dump <file>");
+      context.out.flush();
+      return;
+    }
+    if (recording == null) {
+      context.error("Nothing recorded.");
+      return;
+    }
+    try {
+      recording.dump(Path.of(file));
+    } catch (IOException e) {
+      context.error("Failed to write " + file + ": " + e.getMessage());
+      return;
+    }
+    context.out.println("Wrote " + file);
+    context.out.flush();
+  }
+
+  private static String millis(long nanos) {
+    return String.format(java.util.Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+  }
+
   private static List<CommandProvider> orderedProviders(CommandService service) {
     List<CommandProvider> ordered = new ArrayList<>();
     ordered.addAll(service.enabledProviders());
@@ -178,7 +523,11 @@ public final class SystemCommands extends ReflectiveCommandProvider {
   }
 
   private static CommandProvider findProviderForCommand(CommandService service, String commandName) {
-    for (CommandProvider provider : orderedProviders(service)) {
+    CommandProvider active = service.providerFor(commandName);
+    if (active != null) {
+      return active;
+    }
+    for (CommandProvider provider : service.disabledProviders()) {
       if (provider.commandNames().contains(commandName)) {
         return provider;
       }
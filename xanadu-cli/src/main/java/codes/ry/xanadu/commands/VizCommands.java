@@ -75,6 +75,9 @@ public final class VizCommands implements CommandProvider {
   }
 
   private List<Float> parseValues(CommandContext context, CommandInput input) {
+    if (input.args.isEmpty() && context.upstream() != null) {
+      return pipedValues(context);
+    }
     if (input.args.isEmpty()) {
       context.error("No values provided.");
       for (String line : usage(input.name.toLowerCase())) {
@@ -95,6 +98,38 @@ public final class VizCommands implements CommandProvider {
     return values;
   }
 
+  // Values piped in from another command; a row contributes its last column.
+  private List<Float> pipedValues(CommandContext context) {
+    List<Float> values = new ArrayList<>();
+    for (Object record : context.upstream()) {
+      Float value = value(record);
+      if (value == null) {
+        context.error("Invalid number: " + record);
+        return null;
+      }
+      values.add(value);
+    }
+    return values;
+  }
+
+  private static Float value(Object record) {
+    if (record instanceof List && !((List<?>) record).isEmpty()) {
+      List<?> row = (List<?>) record;
+      return value(row.get(row.size() - 1));
+    }
+    if (record instanceof Number) {
+      return ((Number) record).floatValue();
+    }
+    if (record instanceof CharSequence) {
+      try {
+        return Float.parseFloat(record.toString().trim());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
   private Frame barChart(CommandContext context, List<Float> values) {
     Style style = context.style;
     Style boxStyle = Style.box();
@@ -132,11 +167,35 @@ public final class VizCommands implements CommandProvider {
     return chart.border();
   }
 
-  private Frame horizontalBars(CommandContext context, List<Float> values) {
+  static Frame horizontalBars(CommandContext context, List<Float> values) {
+    int width = context.maxWidth > 0 ? Math.max(6, context.maxWidth - 2) : 20;
+    return horizontalBars(context, values, width);
+  }
+
+  // Horizontal bars with each label beside its bar, fitted to the context's width.
+  static Frame labelledBars(CommandContext context, List<String> labels, List<Float> values) {
+    int labelWidth = 1;
+    for (String label : labels) {
+      labelWidth = Math.max(labelWidth, label.length());
+    }
+    int width = context.maxWidth > 0 ? Math.max(6, context.maxWidth - labelWidth - 3) : 20;
+    // The thin bars' border is drawn outside the chart's rows, so in both layouts row 0 is the
+    // first bar and the labels start there too.
+    int rows = values.size() <= BOX_BAR_THRESHOLD ? BOX_BAR_THICKNESS : 1;
+    List<String> lines = new ArrayList<>();
+    for (String label : labels) {
+      for (int r = 0; r < rows; r++) {
+        lines.add(r == rows / 2 ? label : "");
+      }
+    }
+    Frame names = context.style.text(labelWidth + 1, String.join("\n", lines));
+    return names.append(horizontalBars(context, values, width));
+  }
+
+  private static Frame horizontalBars(CommandContext context, List<Float> values, int width) {
     Style style = context.style;
     Style boxStyle = Style.box();
     boolean useBoxes = values.size() <= BOX_BAR_THRESHOLD;
-    int width = context.maxWidth > 0 ? Math.max(6, context.maxWidth - 2) : 20;
     float max = max(values);
     if (max <= 0f) {
       max = 1f;
@@ -180,7 +239,7 @@ public final class VizCommands implements CommandProvider {
     return context.style.text(sb.toString());
   }
 
-  private float max(List<Float> values) {
+  private static float max(List<Float> values) {
     float max = Float.NEGATIVE_INFINITY;
     for (float value : values) {
       max = Math.max(max, value);
@@ -223,7 +282,7 @@ public final class VizCommands implements CommandProvider {
     return chart.withImage(combined);
   }
 
-  private Frame boxHBarChart(List<Float> values, int width, float max, Style boxStyle) {
+  private static Frame boxHBarChart(List<Float> values, int width, float max, Style boxStyle) {
     if (values.isEmpty()) {
       return null;
     }
@@ -0,0 +1,188 @@
+package codes.ry.xanadu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.command.Command;
+import codes.ry.xanadu.command.CommandInput;
+import codes.ry.xanadu.command.CommandResult;
+import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.ContextKey;
+import codes.ry.xanadu.command.MacroCommands;
+import codes.ry.xanadu.command.NamedCommandProvider;
+import codes.ry.xanadu.command.Threads;
+import codes.ry.xanadu.commands.SystemCommands;
+import codes.ry.xanadu.jdbc.JdbcConnectCommands;
+import codes.ry.xanadu.render.RenderService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ServerTest {
+  private static final ContextKey<String> NAME = ContextKey.of("test.name", String.class);
+  private static final int SESSIONS = 500;
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void runsConcurrentScriptedSessions() throws Exception {
+    Path socket = Files.createTempDirectory("xanadu").resolve("x.sock");
+    CommandService service =
+        new CommandService(
+            List.of(new SystemCommands(), command("remember"), command("recall")));
+    try (Server server = new Server(socket, service, RenderService.defaults(), context -> {})) {
+      Thread acceptor = Threads.start("accept", server::run);
+      String[] outputs = new String[SESSIONS];
+      Throwable[] errors = new Throwable[SESSIONS];
+      List<Thread> clients = new ArrayList<>();
+      for (int i = 0; i < SESSIONS; i++) {
+        int session = i;
+        String script = "remember s" + session + "\nrecall\nquit\nrecall\n";
+        clients.add(
+            Threads.start(
+                "client",
+                () -> {
+                  ByteArrayOutputStream out = new ByteArrayOutputStream();
+                  try {
+                    Attach.run(
+                        socket,
+                        new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)),
+                        out);
+                  } catch (Throwable e) {
+                    errors[session] = e;
+                  }
+                  outputs[session] = out.toString(StandardCharsets.UTF_8);
+                }));
+      }
+      for (Thread client : clients) {
+        client.join();
+      }
+      for (int i = 0; i < SESSIONS; i++) {
+        assertEquals(null, errors[i]);
+        // Each session sees only its own state, and nothing runs after quit.
+        assertEquals("> > name s" + i + "\n> ", outputs[i]);
+      }
+      assertEquals(2 * SESSIONS, calls.get());
+      server.close();
+      acceptor.join();
+      assertEquals(0, server.sessions());
+      assertTrue(!Files.exists(socket));
+    }
+  }
+
+  @Test
+  void keepsMacrosWithinTheSessionThatDefinedThem() throws Exception {
+    Path socket = Files.createTempDirectory("xanadu").resolve("x.sock");
+    CommandService service =
+        new CommandService(
+            List.of(
+                new SystemCommands(), new MacroCommands(), command("remember"), command("recall")));
+    try (Server server = new Server(socket, service, RenderService.defaults(), context -> {})) {
+      Thread acceptor = Threads.start("accept", server::run);
+      String first = attach(socket, "remember a\ndef hi recall end\nhi\nmacros\n");
+      String second = attach(socket, "remember b\nmacros\nhi\n");
+      server.close();
+      acceptor.join();
+      assertEquals("> > > name a\n> hi\n> ", first);
+      // The other session neither lists nor runs it.
+      assertTrue(second.startsWith("> > No macros defined.\n> "), second);
+      assertTrue(second.contains("Unknown command: hi"), second);
+    }
+  }
+
+  @Test
+  void closesASessionsConnectionWhenItEnds() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    Driver driver = driver(opened, closed);
+    DriverManager.registerDriver(driver);
+    Path socket = Files.createTempDirectory("xanadu").resolve("x.sock");
+    CommandService service =
+        new CommandService(List.of(new SystemCommands(), new JdbcConnectCommands()));
+    try (Server server = new Server(socket, service, RenderService.defaults(), context -> {})) {
+      Thread acceptor = Threads.start("accept", server::run);
+      String output = attach(socket, "connect jdbc:servertest:db\n");
+      assertTrue(output.contains("Connected."), output);
+      // The session released its connection before the client saw it end.
+      assertEquals(1, opened.get());
+      assertEquals(1, closed.get());
+      server.close();
+      acceptor.join();
+    } finally {
+      DriverManager.deregisterDriver(driver);
+    }
+  }
+
+  // Hands out connections that only count their close.
+  private static Driver driver(AtomicInteger opened, AtomicInteger closed) {
+    return (Driver)
+        Proxy.newProxyInstance(
+            Driver.class.getClassLoader(),
+            new Class<?>[] {Driver.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "acceptsURL":
+                  return ((String) args[0]).startsWith("jdbc:servertest:");
+                case "connect":
+                  if (!((String) args[0]).startsWith("jdbc:servertest:")) {
+                    return null;
+                  }
+                  opened.incrementAndGet();
+                  return connection(closed);
+                case "getMajorVersion":
+                case "getMinorVersion":
+                  return 1;
+                case "jdbcCompliant":
+                  return false;
+                default:
+                  return null;
+              }
+            });
+  }
+
+  private static Connection connection(AtomicInteger closed) {
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("close")) {
+                closed.incrementAndGet();
+              }
+              return method.getReturnType() == boolean.class ? false : null;
+            });
+  }
+
+  private static String attach(Path socket, String script) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Attach.run(socket, new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  private NamedCommandProvider command(String name) {
+    return new NamedCommandProvider(name) {
+      @Override
+      public Command commandFor(CommandInput input) {
+        return ctx -> {
+          calls.incrementAndGet();
+          if (input.args.isEmpty()) {
+            ctx.out.println("name " + ctx.get(NAME));
+          } else {
+            ctx.put(NAME, input.args.get(0));
+          }
+          return CommandResult.SUCCESS;
+        };
+      }
+    };
+  }
+}
@@ -4,15 +4,27 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
 import codes.ry.xanadu.Style;
+import codes.ry.xanadu.command.Command;
 import codes.ry.xanadu.command.CommandContext;
+import codes.ry.xanadu.command.CommandInput;
 import codes.ry.xanadu.command.CommandProvider;
+import codes.ry.xanadu.command.CommandResult;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.Job;
+import codes.ry.xanadu.command.Jobs;
 import codes.ry.xanadu.command.LogLevel;
+import codes.ry.xanadu.command.NamedCommandProvider;
+import codes.ry.xanadu.command.ScriptPlan;
 import codes.ry.xanadu.render.RenderService;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -132,6 +144,174 @@ class SystemCommandsTest {
     assertTrue(result.contains("Available levels"));
   }
 
+  @Test
+  void renderBudgetTruncatesLongOutput() {
+    commands.render(context, "cells", 50);
+    context.render("x".repeat(10_000));
+    context.out.flush();
+    String result = output.toString();
+    assertTrue(result.contains("Render budget: 50 cells, unlimited"));
+    assertTrue(result.contains("(render truncated)"));
+    assertTrue(!result.contains("x".repeat(51)));
+  }
+
+  @Test
+  void renderParallelSetsTheThreshold() {
+    commands.render(context, "parallel", 1000);
+    assertEquals(1000, context.parallelRenderCells());
+    commands.render(context, "parallel", 0);
+    context.out.flush();
+    assertEquals(0, context.parallelRenderCells());
+    assertTrue(output.toString().contains("Parallel rendering: off"));
+  }
+
+  @Test
+  void renderWithUnknownSettingShowsError() {
+    commands.render(context, "speed", 1);
+    context.out.flush();
+    assertTrue(output.toString().contains("Unknown render setting"));
+  }
+
+  @Test
+  void rendercacheReplaysFramesUntilInvalidated() {
+    commands.rendercache(context, "on");
+    Image image = Image.text("cached");
+    for (int i = 0; i < 3; i++) {
+      context.render(new Frame(1, 6, image, context.style));
+    }
+    // Stored on the second miss, replayed on the third render.
+    assertEquals(1, context.renderCache().hits());
+    assertEquals(1, context.renderCache().size());
+    context.invalidateRender(image);
+    assertEquals(0, context.renderCache().size());
+    context.render(new Frame(1, 6, image, context.style));
+    context.out.flush();
+    String result = output.toString();
+    assertEquals(4, result.split("cached", -1).length - 1);
+    commands.rendercache(context);
+    context.out.flush();
+    assertTrue(output.toString().contains("Render cache: 0 entries"), output.toString());
+    assertTrue(output.toString().contains("1 hits, 3 misses"));
+  }
+
+  @Test
+  void rendercacheRendersMutableValuesFresh() {
+    commands.rendercache(context, "on");
+    List<String> value = new java.util.ArrayList<>(List.of("a", "b"));
+    context.render(value);
+    context.render(value);
+    value.add("c");
+    context.render(value);
+    context.out.flush();
+    assertTrue(output.toString().contains("└─c"));
+    assertEquals(0, context.renderCache().size());
+  }
+
+  @Test
+  void rendercacheWithInvalidModeShowsError() {
+    commands.rendercache(context, "sideways");
+    context.out.flush();
+    assertTrue(output.toString().contains("Unknown render cache mode"));
+    assertEquals(null, context.renderCache());
+  }
+
+  @Test
+  void backgroundJobsBufferOutputUntilBroughtToTheForeground() {
+    java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+    CommandProvider slow =
+        new NamedCommandProvider("slow") {
+          @Override
+          public Command commandFor(CommandInput input) {
+            return ctx -> {
+              ctx.out.println("started " + String.join(" ", input.args));
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                return CommandResult.FAILURE;
+              }
+              ctx.out.println("finished");
+              return CommandResult.SUCCESS;
+            };
+          }
+        };
+    context.setCommandService(new CommandService(List.of(commands, slow)));
+    ScriptPlan.executeLine(context, "slow load &");
+    context.out.flush();
+    assertTrue(output.toString().contains("[1] slow load"));
+    assertTrue(!output.toString().contains("started"));
+
+    commands.jobs(context);
+    context.out.flush();
+    assertTrue(output.toString().contains("[1] running"));
+
+    release.countDown();
+    commands.fg(context, 1);
+    context.out.flush();
+    assertTrue(output.toString().contains("started load\nfinished"));
+    assertEquals(List.of(), context.jobs().list());
+  }
+
+  @Test
+  void killCancelsAJob() throws Exception {
+    CommandProvider spin =
+        new NamedCommandProvider("spin") {
+          @Override
+          public Command commandFor(CommandInput input) {
+            return ctx -> {
+              while (!ctx.consumeCancel()) {
+                Thread.onSpinWait();
+              }
+              return CommandResult.SUCCESS;
+            };
+          }
+        };
+    context.setCommandService(new CommandService(List.of(commands, spin)));
+    ScriptPlan.executeLine(context, "spin&");
+    Job job = context.jobs().get(1);
+    commands.kill(context, 1);
+    context.out.flush();
+    // kill waits for the job to stop, reports it, and forgets it.
+    assertEquals(Job.State.KILLED, job.state());
+    assertTrue(output.toString().contains("[1] killed  spin"));
+    assertEquals(List.of(), context.jobs().list());
+    commands.kill(context, 2);
+    context.out.flush();
+    assertTrue(output.toString().contains("No such job: 2"));
+  }
+
+  @Test
+  void waitForgetsJobsAndEndedJobsAreCapped() {
+    CommandProvider noisy =
+        new NamedCommandProvider("noisy") {
+          @Override
+          public Command commandFor(CommandInput input) {
+            return ctx -> {
+              ctx.out.print("x".repeat(Job.OUTPUT_LIMIT + 10));
+              return CommandResult.SUCCESS;
+            };
+          }
+        };
+    context.setCommandService(new CommandService(List.of(commands, noisy)));
+    ScriptPlan.executeLine(context, "noisy &");
+    Job first = context.jobs().get(1);
+    commands.wait(context);
+    assertEquals(List.of(), context.jobs().list());
+    assertTrue(first.output(0).length() < Job.OUTPUT_LIMIT + 100);
+    assertTrue(first.output(0).endsWith("(job output truncated)\n"));
+
+    for (int i = 0; i < Jobs.MAX_ENDED + 4; i++) {
+      ScriptPlan.executeLine(context, "noisy &");
+    }
+    for (Job job : context.jobs().list()) {
+      try {
+        job.await(0);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+    }
+    assertTrue(context.jobs().list().size() <= Jobs.MAX_ENDED);
+  }
+
   @Test
   void lastexceptionWithNoExceptionShowsMessage() {
     commands.lastexception(context);
@@ -150,6 +330,76 @@ class SystemCommandsTest {
     assertTrue(result.contains("Test exception"));
   }
 
+  @Test
+  void statsCountsRunsAndErrorsPerCommand() {
+    ScriptPlan.executeLine(context, "loglevel");
+    ScriptPlan.executeLine(context, "loglevel");
+    ScriptPlan.executeLine(context, "loglevel nonsense");
+    ScriptPlan.executeLine(context, "rendercache");
+    output.getBuffer().setLength(0);
+    commands.stats(context);
+    context.out.flush();
+    String result = output.toString();
+    assertTrue(result.contains("p99 ms"));
+    assertTrue(result.matches("(?s).*│loglevel   │3    │1     │.*"), result);
+    assertTrue(result.matches("(?s).*│rendercache│1    │0     │.*"), result);
+
+    output.getBuffer().setLength(0);
+    commands.stats(context, "reset");
+    commands.stats(context);
+    context.out.flush();
+    assertTrue(output.toString().contains("No command stats."));
+  }
+
+  @Test
+  void statsLabelsSitBesideTheirBars() {
+    List<String> names =
+        List.of("loglevel", "lastexception", "render", "rendercache", "jobs", "wait", "help");
+    for (String name : names) {
+      ScriptPlan.executeLine(context, name);
+    }
+    output.getBuffer().setLength(0);
+    commands.stats(context);
+    context.out.flush();
+    String result = output.toString();
+    String[] chart = result.substring(result.indexOf("p99 ms\n") + 7).strip().split("\n");
+    // More than six commands draw thin bars in one bordered box.
+    assertTrue(chart[0].trim().startsWith("┌"), result);
+    assertTrue(chart[chart.length - 1].trim().startsWith("└"), result);
+    assertEquals(names.size() + 2, chart.length, result);
+    // Stats list commands by name; each label is on its bar's row, between the borders.
+    List<String> sorted = names.stream().sorted().toList();
+    for (int i = 0; i < sorted.size(); i++) {
+      String row = chart[i + 1];
+      assertTrue(row.contains("│"), result);
+      assertEquals(sorted.get(i), row.substring(0, row.indexOf('│')).trim(), result);
+    }
+  }
+
+  @Test
+  void profileRecordsCommandEvents() throws Exception {
+    Path file = Files.createTempFile("xanadu", ".jfr");
+    commands.profile(context, "start");
+    ScriptPlan.executeLine(context, "loglevel");
+    commands.profile(context, "stop");
+    commands.profile(context, "dump", file.toString());
+    context.out.flush();
+    assertTrue(output.toString().contains("Wrote " + file), output.toString());
+    assertTrue(
+        RecordingFile.readAllEvents(file).stream()
+            .anyMatch(
+                event ->
+                    event.getEventType().getName().equals("codes.ry.xanadu.CommandExecuted")
+                        && event.getString("name").equals("loglevel")
+                        && event.getString("result").equals("SUCCESS")));
+    Files.delete(file);
+
+    output.getBuffer().setLength(0);
+    commands.profile(context, "bogus");
+    context.out.flush();
+    assertTrue(output.toString().contains("Available actions"));
+  }
+
   @Test
   void usageReturnsCorrectUsageForQuit() {
     List<String> usage = commands.usage("quit");
@@ -7,8 +7,11 @@ import codes.ry.xanadu.Style;
 import codes.ry.xanadu.command.Command;
 import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
+import codes.ry.xanadu.command.CommandParser;
+import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandResult;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.NamedCommandProvider;
 import codes.ry.xanadu.render.RenderService;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -138,6 +141,27 @@ class VizCommandsTest {
     // Just check that something was produced
   }
 
+  @Test
+  void sparkReadsValuesPipedFromAnotherCommand() {
+    CommandProvider rows =
+        new NamedCommandProvider("rows") {
+          @Override
+          public Command commandFor(CommandInput input) {
+            return ctx -> {
+              for (int value : new int[] {1, 2, 4, 8, 16, 32, 64}) {
+                ctx.emit(List.of("label", value));
+              }
+              return CommandResult.SUCCESS;
+            };
+          }
+        };
+    context.setCommandService(new CommandService(List.of(rows, commands)));
+    Command command = context.commandService().find(CommandParser.parse("rows | spark")).get();
+    command.execute(context);
+    context.out.flush();
+    assertEquals("▁▁▁▂▃▅█", output.toString().trim());
+  }
+
   @Test
   void sparkWithSingleValue() throws Exception {
     CommandInput input = new CommandInput("spark 100", "spark", List.of("100"));
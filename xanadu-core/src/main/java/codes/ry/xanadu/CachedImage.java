@@ -0,0 +1,160 @@
+package codes.ry.xanadu;
+
+/**
+ * Image that rasterizes its source in square tiles on first access and keeps them in the shared
+ * {@link TileCache}, so cells read again (a repeated dump, a scroll, a different clip) are copied
+ * rather than recomputed. Cells outside the source's bounds are never cached.
+ */
+class CachedImage implements Image {
+  final Image source;
+  final int tileSize;
+  final Rect bounds;
+  private final TileCache cache;
+  private final long id = TileCache.nextId();
+  private final boolean sourceImmutable;
+  private volatile CellBuffer last;
+
+  private CachedImage(Image source, int tileSize, TileCache cache) {
+    this.source = source;
+    this.tileSize = tileSize;
+    this.bounds = source.bounds();
+    this.cache = cache;
+    this.sourceImmutable = source.immutable();
+  }
+
+  static Image of(Image image, int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+    }
+    if (image instanceof CachedImage) {
+      CachedImage cached = (CachedImage) image;
+      if (cached.tileSize == tileSize) {
+        return cached;
+      }
+      image = cached.source;
+    }
+    if (image instanceof StyledImage) {
+      return new StyledCachedImage((StyledImage) image, tileSize, TileCache.shared());
+    }
+    return new CachedImage(image, tileSize, TileCache.shared());
+  }
+
+  @Override
+  public Rect bounds() {
+    return bounds;
+  }
+
+  @Override
+  public char at(int i, int j) {
+    if (outside(i, j)) {
+      return ' ';
+    }
+    return tile(i, j).at(i, j);
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    int from = jFrom;
+    int to = jTo;
+    if (bounds != null) {
+      if (i < bounds.top || i >= bounds.bottom) {
+        Images.blank(dst, off, jTo - jFrom);
+        return;
+      }
+      from = Math.max(jFrom, bounds.left);
+      to = Math.min(jTo, bounds.right);
+      if (from >= to) {
+        Images.blank(dst, off, jTo - jFrom);
+        return;
+      }
+      Images.blank(dst, off, from - jFrom);
+      Images.blank(dst, off + to - jFrom, jTo - to);
+    }
+    int j = from;
+    while (j < to) {
+      CellBuffer tile = tile(i, j);
+      int end = Math.min(to, tile.rect.right);
+      tile.readRow(i, j, end, dst, off + j - jFrom);
+      j = end;
+    }
+  }
+
+  @Override
+  public CachedImage cached(int tileSize) {
+    return tileSize == this.tileSize ? this : (CachedImage) of(source, tileSize);
+  }
+
+  final boolean outside(int i, int j) {
+    return bounds != null
+        && (i < bounds.top || i >= bounds.bottom || j < bounds.left || j >= bounds.right);
+  }
+
+  final CellBuffer tile(int i, int j) {
+    CellBuffer tile = last;
+    if (tile != null
+        && i >= tile.rect.top
+        && i < tile.rect.bottom
+        && j >= tile.rect.left
+        && j < tile.rect.right) {
+      return tile;
+    }
+    int top = Math.floorDiv(i, tileSize) * tileSize;
+    int left = Math.floorDiv(j, tileSize) * tileSize;
+    Rect rect = new Rect(top, left, tileSize, tileSize);
+    tile = sourceImmutable ? cache.tile(id, source, rect) : lockedTile(rect);
+    last = tile;
+    return tile;
+  }
+
+  // Tiles are snapshots, so the cached image may be read on several threads; a source that is not
+  // immutable is still read by one thread at a time.
+  @Override
+  public boolean immutable() {
+    return true;
+  }
+
+  private synchronized CellBuffer lockedTile(Rect rect) {
+    return cache.tile(id, source, rect);
+  }
+
+  private static final class StyledCachedImage extends CachedImage implements StyledImage {
+    private StyledCachedImage(StyledImage source, int tileSize, TileCache cache) {
+      super(source, tileSize, cache);
+    }
+
+    @Override
+    public TextStyle styleAt(int i, int j) {
+      if (outside(i, j)) {
+        return TextStyle.NORMAL;
+      }
+      return tile(i, j).styleAt(i, j);
+    }
+
+    @Override
+    public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+      int from = jFrom;
+      int to = jTo;
+      if (bounds != null) {
+        if (i < bounds.top || i >= bounds.bottom) {
+          Images.plain(dst, off, jTo - jFrom);
+          return;
+        }
+        from = Math.max(jFrom, bounds.left);
+        to = Math.min(jTo, bounds.right);
+        if (from >= to) {
+          Images.plain(dst, off, jTo - jFrom);
+          return;
+        }
+        Images.plain(dst, off, from - jFrom);
+        Images.plain(dst, off + to - jFrom, jTo - to);
+      }
+      int j = from;
+      while (j < to) {
+        CellBuffer tile = tile(i, j);
+        int end = Math.min(to, tile.rect.right);
+        tile.readStyles(i, j, end, dst, off + j - jFrom);
+        j = end;
+      }
+    }
+  }
+}
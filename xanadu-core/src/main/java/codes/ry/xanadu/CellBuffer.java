@@ -0,0 +1,127 @@
+package codes.ry.xanadu;
+
+public final class CellBuffer implements StyledImage {
+  private static final TextStyle[] STYLES = TextStyle.values();
+
+  public final Rect rect;
+  private final char[] cells;
+  // One TextStyle ordinal per cell; null when every cell is NORMAL.
+  private final byte[] styles;
+
+  private CellBuffer(Rect rect, char[] cells, byte[] styles) {
+    this.rect = rect;
+    this.cells = cells;
+    this.styles = styles;
+  }
+
+  public static CellBuffer of(Image image, Rect rect) {
+    if (image instanceof CellBuffer && sameRect(((CellBuffer) image).rect, rect)) {
+      return (CellBuffer) image;
+    }
+    int height = Math.max(0, rect.height);
+    int width = Math.max(0, rect.width);
+    char[] cells = new char[Math.multiplyExact(height, width)];
+    byte[] styles = null;
+    StyledImage styled = image instanceof StyledImage ? (StyledImage) image : null;
+    TextStyle[] row = styled == null ? null : new TextStyle[width];
+    for (int i = 0; i < height; i++) {
+      int drawI = rect.top + i;
+      image.readRow(drawI, rect.left, rect.left + width, cells, i * width);
+      if (styled == null) {
+        continue;
+      }
+      styled.readStyles(drawI, rect.left, rect.left + width, row, 0);
+      for (int j = 0; j < width; j++) {
+        if (row[j] != TextStyle.NORMAL) {
+          if (styles == null) {
+            styles = new byte[cells.length];
+          }
+          styles[i * width + j] = (byte) row[j].ordinal();
+        }
+      }
+    }
+    return new CellBuffer(new Rect(rect.top, rect.left, height, width), cells, styles);
+  }
+
+  @Override
+  public char at(int i, int j) {
+    int index = indexOf(i, j);
+    return index < 0 ? ' ' : cells[index];
+  }
+
+  @Override
+  public TextStyle styleAt(int i, int j) {
+    if (styles == null) {
+      return TextStyle.NORMAL;
+    }
+    int index = indexOf(i, j);
+    return index < 0 ? TextStyle.NORMAL : STYLES[styles[index]];
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    int row = i - rect.top;
+    if (row < 0 || row >= rect.height) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    int from = Math.max(jFrom, rect.left);
+    int to = Math.min(jTo, rect.right);
+    if (from >= to) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    Images.blank(dst, off, from - jFrom);
+    System.arraycopy(cells, row * rect.width + from - rect.left, dst, off + from - jFrom, to - from);
+    Images.blank(dst, off + to - jFrom, jTo - to);
+  }
+
+  @Override
+  public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+    int row = i - rect.top;
+    int from = Math.max(jFrom, rect.left);
+    int to = Math.min(jTo, rect.right);
+    if (styles == null || row < 0 || row >= rect.height || from >= to) {
+      Images.plain(dst, off, jTo - jFrom);
+      return;
+    }
+    Images.plain(dst, off, from - jFrom);
+    int index = row * rect.width + from - rect.left;
+    for (int j = from; j < to; j++) {
+      dst[off + j - jFrom] = STYLES[styles[index++]];
+    }
+    Images.plain(dst, off + to - jFrom, jTo - to);
+  }
+
+  @Override
+  public Rect bounds() {
+    return rect;
+  }
+
+  @Override
+  public boolean immutable() {
+    return true;
+  }
+
+  public boolean hasStyles() {
+    return styles != null;
+  }
+
+  @Override
+  public CellBuffer materialize(Rect rect) {
+    return of(this, rect);
+  }
+
+  private int indexOf(int i, int j) {
+    int row = i - rect.top;
+    int col = j - rect.left;
+    if (row < 0 || col < 0 || row >= rect.height || col >= rect.width) {
+      return -1;
+    }
+    return row * rect.width + col;
+  }
+
+  private static boolean sameRect(Rect a, Rect b) {
+    return a.top == b.top && a.left == b.left && a.height == b.height && a.width == b.width;
+  }
+}
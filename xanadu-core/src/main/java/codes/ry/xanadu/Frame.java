@@ -23,10 +23,15 @@ public class Frame implements Image {
 
   public void dump(PrintWriter w) {
     w.append('\n');
+    char[] row = new char[Math.max(0, drawRect.width)];
+    Rect bounds = bounds();
     for (int i = 0; i < drawRect.height; i++) {
-      for (int j = 0; j < drawRect.width; j++) {
-        w.append(at(i, j));
+      if (bounds != null && (i < bounds.top || i >= bounds.bottom)) {
+        Images.blank(row, 0, row.length);
+      } else {
+        readRow(i, 0, row.length, row, 0);
       }
+      w.write(row, 0, row.length);
       w.append('\n');
     }
   }
@@ -38,12 +43,31 @@ public class Frame implements Image {
     return image.at(drawI, drawJ);
   }
 
+  @Override
+  public final Rect bounds() {
+    Rect bounds = image.bounds();
+    if (bounds == null || Images.isEmpty(bounds)) {
+      return bounds;
+    }
+    return bounds.offset(-drawRect.top, -drawRect.left);
+  }
+
+  @Override
+  public final void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    image.readRow(i + drawRect.top, jFrom + drawRect.left, jTo + drawRect.left, dst, off);
+  }
+
+  @Override
+  public final boolean immutable() {
+    return image.immutable();
+  }
+
   public Frame append(Frame next) {
     int gap = horizontalGap(this, next);
     int offset = width + gap;
     int combinedHeight = Math.max(height, next.height);
     int combinedWidth = width + gap + next.width;
-    Image combined = StyledImages.combine(image, StyledImages.offset(next.image, 0, offset), style);
+    Image combined = FrameStack.append(this, next, 0, offset, false);
     Rect combinedDraw = union(drawRect, next.drawRect.offset(0, offset));
     return new Frame(combinedHeight, combinedWidth, combined, style, combinedDraw);
   }
@@ -53,7 +77,7 @@ public class Frame implements Image {
     int offset = height + gap;
     int combinedHeight = height + gap + next.height;
     int combinedWidth = Math.max(width, next.width);
-    Image combined = StyledImages.combine(image, StyledImages.offset(next.image, offset, 0), style);
+    Image combined = FrameStack.append(this, next, offset, 0, true);
     Rect combinedDraw = union(drawRect, next.drawRect.offset(offset, 0));
     return new Frame(combinedHeight, combinedWidth, combined, style, combinedDraw);
   }
@@ -84,9 +108,9 @@ public class Frame implements Image {
       }
       return style.glyph(mask);
     };
-    Image content = StyledImages.clip(image, height, width);
-    Image combined = StyledImages.combine(content, border, style);
     Rect borderRect = new Rect(-1, -1, height + 2, width + 2);
+    Image content = StyledImages.clip(image, height, width);
+    Image combined = StyledImages.combine(content, border.bounded(borderRect), style);
     Rect combinedDraw = union(drawRect, borderRect);
     return new Frame(height, width, combined, style, combinedDraw);
   }
@@ -125,9 +149,9 @@ public class Frame implements Image {
       }
       return style.glyph(mask);
     };
-    Image content = StyledImages.clip(image, height, width);
-    Image combined = StyledImages.combine(shadow, content, style);
     Rect shadowRect = new Rect(0, 0, height + 1, width + 1);
+    Image content = StyledImages.clip(image, height, width);
+    Image combined = StyledImages.combine(shadow.bounded(shadowRect), content, style);
     Rect combinedDraw = union(drawRect, shadowRect);
     return new Frame(height, width, combined, style, combinedDraw);
   }
@@ -140,6 +164,15 @@ public class Frame implements Image {
     return shadow(Style.fill());
   }
 
+  public Frame materialize() {
+    return withImage(image.materialize(drawRect));
+  }
+
+  @Override
+  public Frame cached(int tileSize) {
+    return withImage(image.cached(tileSize));
+  }
+
   public Frame withImage(Image image) {
     return new Frame(height, width, image, style, drawRect);
   }
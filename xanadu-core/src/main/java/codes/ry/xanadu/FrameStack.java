@@ -0,0 +1,353 @@
+package codes.ry.xanadu;
+
+import java.util.Arrays;
+
+/**
+ * Image for a run of frames joined by {@link Frame#append} or {@link Frame#appendVertical}.
+ *
+ * <p>Children are kept in append order with their image bounds in combined coordinates, so the
+ * stack reads the same as the nested {@link StyledImages#combine} chain it replaces. A cell
+ * lookup binary-searches the children along the stacking axis and combines just the few whose
+ * bounds hold it (usually one, or two on a shared border); an unbounded child spans everything
+ * and falls back to a linear scan.
+ *
+ * <p>Stacks extended from a common prefix share one growth buffer. Each stack keeps its own
+ * final references to the buffer's arrays, taken under the buffer's lock, and reads only the
+ * first {@code count} entries, which later appends never rewrite.
+ */
+final class FrameStack implements StyledImage {
+  private static final int UNBOUNDED_START = Integer.MIN_VALUE;
+  private static final int UNBOUNDED_END = Integer.MAX_VALUE;
+
+  private final boolean vertical;
+  private final Style style;
+  // Growth buffer shared with stacks on the same prefix; only touched under its own lock.
+  private final Children children;
+  private final int count;
+  private final Image[] images;
+  private final int[] di;
+  private final int[] dj;
+  private final int[] top;
+  private final int[] left;
+  private final int[] bottom;
+  private final int[] right;
+  private final boolean styled;
+  // True while child extents are sorted by both start and end along the axis.
+  private final boolean monotonic;
+  // True while every child image is immutable.
+  private final boolean immutable;
+
+  // Callers hold the lock on children, or have not yet shared it.
+  private FrameStack(
+      boolean vertical,
+      Style style,
+      Children children,
+      boolean styled,
+      boolean monotonic,
+      boolean immutable) {
+    this.vertical = vertical;
+    this.style = style;
+    this.children = children;
+    this.count = children.size;
+    this.images = children.images;
+    this.di = children.di;
+    this.dj = children.dj;
+    this.top = children.top;
+    this.left = children.left;
+    this.bottom = children.bottom;
+    this.right = children.right;
+    this.styled = styled;
+    this.monotonic = monotonic;
+    this.immutable = immutable;
+  }
+
+  static Image append(Frame first, Frame next, int di, int dj, boolean vertical) {
+    if (first.image instanceof FrameStack) {
+      FrameStack stack = (FrameStack) first.image;
+      if (stack.vertical == vertical && stack.style == first.style) {
+        return stack.extend(next.image, di, dj);
+      }
+    }
+    Children children = new Children(4);
+    children.add(first.image, 0, 0);
+    children.add(next.image, di, dj);
+    boolean styled = first.image instanceof StyledImage || next.image instanceof StyledImage;
+    boolean monotonic = children.ordered(vertical);
+    boolean immutable = first.image.immutable() && next.image.immutable();
+    return new FrameStack(vertical, first.style, children, styled, monotonic, immutable);
+  }
+
+  private FrameStack extend(Image image, int rowOffset, int colOffset) {
+    Rect bounds = image.bounds();
+    if (bounds != null && Images.isEmpty(bounds)) {
+      return this;
+    }
+    boolean nextStyled = styled || image instanceof StyledImage;
+    boolean nextImmutable = immutable && image.immutable();
+    synchronized (children) {
+      Children target = children.size == count ? children : children.copy(count);
+      target.add(image, rowOffset, colOffset);
+      boolean nextMonotonic = monotonic && target.ordered(vertical);
+      return new FrameStack(vertical, style, target, nextStyled, nextMonotonic, nextImmutable);
+    }
+  }
+
+  @Override
+  public boolean immutable() {
+    return immutable;
+  }
+
+  @Override
+  public Rect bounds() {
+    if (count == 0) {
+      return Images.NOWHERE;
+    }
+    int minTop = Integer.MAX_VALUE;
+    int minLeft = Integer.MAX_VALUE;
+    int maxBottom = Integer.MIN_VALUE;
+    int maxRight = Integer.MIN_VALUE;
+    for (int k = 0; k < count; k++) {
+      if (top[k] == UNBOUNDED_START) {
+        return null;
+      }
+      minTop = Math.min(minTop, top[k]);
+      minLeft = Math.min(minLeft, left[k]);
+      maxBottom = Math.max(maxBottom, bottom[k]);
+      maxRight = Math.max(maxRight, right[k]);
+    }
+    return new Rect(minTop, minLeft, maxBottom - minTop, maxRight - minLeft);
+  }
+
+  @Override
+  public char at(int i, int j) {
+    int axis = vertical ? i : j;
+    int from = monotonic ? firstEndingAfter(axis) : 0;
+    int to = monotonic ? lastStartingAtOrBefore(axis) : count - 1;
+    char c = ' ';
+    for (int k = from; k <= to; k++) {
+      if (contains(k, i, j)) {
+        c = style.combine(c, images[k].at(i - di[k], j - dj[k]));
+      }
+    }
+    return c;
+  }
+
+  @Override
+  public TextStyle styleAt(int i, int j) {
+    if (!styled) {
+      return TextStyle.NORMAL;
+    }
+    int axis = vertical ? i : j;
+    int from = monotonic ? firstEndingAfter(axis) : 0;
+    int to = monotonic ? lastStartingAtOrBefore(axis) : count - 1;
+    for (int k = from; k <= to; k++) {
+      Image image = images[k];
+      if (!(image instanceof StyledImage) || !contains(k, i, j)) {
+        continue;
+      }
+      if (((StyledImage) image).styleAt(i - di[k], j - dj[k]) == TextStyle.BOLD) {
+        return TextStyle.BOLD;
+      }
+    }
+    return TextStyle.NORMAL;
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    Images.blank(dst, off, jTo - jFrom);
+    int from = firstCandidate(i, jFrom);
+    int to = lastCandidate(i, jTo);
+    // Every cell at or right of `written` still holds the blank fill, so a child's cells there
+    // can be copied in bulk; only cells left of it need a per-cell combine.
+    int written = Integer.MIN_VALUE;
+    for (int k = from; k <= to; k++) {
+      if (i < top[k] || i >= bottom[k]) {
+        continue;
+      }
+      int a = Math.max(jFrom, left[k]);
+      int b = Math.min(jTo, right[k]);
+      if (a >= b) {
+        continue;
+      }
+      Image image = images[k];
+      int ci = i - di[k];
+      int cj = dj[k];
+      int overlapEnd = Math.min(b, written);
+      for (int j = a; j < overlapEnd; j++) {
+        int index = off + j - jFrom;
+        dst[index] = style.combine(dst[index], image.at(ci, j - cj));
+      }
+      int bulkStart = Math.max(a, written);
+      if (bulkStart < b) {
+        image.readRow(ci, bulkStart - cj, b - cj, dst, off + bulkStart - jFrom);
+      }
+      written = Math.max(written, b);
+    }
+  }
+
+  @Override
+  public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+    Images.plain(dst, off, jTo - jFrom);
+    if (!styled) {
+      return;
+    }
+    int from = firstCandidate(i, jFrom);
+    int to = lastCandidate(i, jTo);
+    int written = Integer.MIN_VALUE;
+    for (int k = from; k <= to; k++) {
+      Image image = images[k];
+      if (!(image instanceof StyledImage) || i < top[k] || i >= bottom[k]) {
+        continue;
+      }
+      int a = Math.max(jFrom, left[k]);
+      int b = Math.min(jTo, right[k]);
+      if (a >= b) {
+        continue;
+      }
+      StyledImage styledImage = (StyledImage) image;
+      int ci = i - di[k];
+      int cj = dj[k];
+      int overlapEnd = Math.min(b, written);
+      for (int j = a; j < overlapEnd; j++) {
+        if (styledImage.styleAt(ci, j - cj) == TextStyle.BOLD) {
+          dst[off + j - jFrom] = TextStyle.BOLD;
+        }
+      }
+      int bulkStart = Math.max(a, written);
+      if (bulkStart < b) {
+        styledImage.readStyles(ci, bulkStart - cj, b - cj, dst, off + bulkStart - jFrom);
+      }
+      written = Math.max(written, b);
+    }
+  }
+
+  private int firstCandidate(int i, int jFrom) {
+    if (!monotonic) {
+      return 0;
+    }
+    return firstEndingAfter(vertical ? i : jFrom);
+  }
+
+  private int lastCandidate(int i, int jTo) {
+    if (!monotonic) {
+      return count - 1;
+    }
+    return lastStartingAtOrBefore(vertical ? i : jTo - 1);
+  }
+
+  private int lastStartingAtOrBefore(int axis) {
+    int[] starts = vertical ? top : left;
+    int lo = 0;
+    int hi = count - 1;
+    int found = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (starts[mid] <= axis) {
+        found = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  private int firstEndingAfter(int axis) {
+    int[] ends = vertical ? bottom : right;
+    int lo = 0;
+    int hi = count - 1;
+    int found = count;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (ends[mid] > axis) {
+        found = mid;
+        hi = mid - 1;
+      } else {
+        lo = mid + 1;
+      }
+    }
+    return found;
+  }
+
+  private boolean contains(int k, int i, int j) {
+    return i >= top[k] && i < bottom[k] && j >= left[k] && j < right[k];
+  }
+
+  // Append-only buffer behind one or more stacks; entries below size are never rewritten.
+  private static final class Children {
+    private Image[] images;
+    private int[] di;
+    private int[] dj;
+    private int[] top;
+    private int[] left;
+    private int[] bottom;
+    private int[] right;
+    private int size;
+
+    private Children(int capacity) {
+      images = new Image[capacity];
+      di = new int[capacity];
+      dj = new int[capacity];
+      top = new int[capacity];
+      left = new int[capacity];
+      bottom = new int[capacity];
+      right = new int[capacity];
+    }
+
+    // Skips an image with empty bounds, which leaves every cell of the stack as it was.
+    private void add(Image image, int rowOffset, int colOffset) {
+      Rect bounds = image.bounds();
+      if (bounds != null && Images.isEmpty(bounds)) {
+        return;
+      }
+      if (size == images.length) {
+        int capacity = Math.max(4, size * 2);
+        images = Arrays.copyOf(images, capacity);
+        di = Arrays.copyOf(di, capacity);
+        dj = Arrays.copyOf(dj, capacity);
+        top = Arrays.copyOf(top, capacity);
+        left = Arrays.copyOf(left, capacity);
+        bottom = Arrays.copyOf(bottom, capacity);
+        right = Arrays.copyOf(right, capacity);
+      }
+      images[size] = image;
+      di[size] = rowOffset;
+      dj[size] = colOffset;
+      if (bounds == null) {
+        top[size] = UNBOUNDED_START;
+        left[size] = UNBOUNDED_START;
+        bottom[size] = UNBOUNDED_END;
+        right[size] = UNBOUNDED_END;
+      } else {
+        top[size] = bounds.top + rowOffset;
+        left[size] = bounds.left + colOffset;
+        bottom[size] = bounds.bottom + rowOffset;
+        right[size] = bounds.right + colOffset;
+      }
+      size++;
+    }
+
+    private Children copy(int count) {
+      Children copy = new Children(Math.max(4, count * 2));
+      System.arraycopy(images, 0, copy.images, 0, count);
+      System.arraycopy(di, 0, copy.di, 0, count);
+      System.arraycopy(dj, 0, copy.dj, 0, count);
+      System.arraycopy(top, 0, copy.top, 0, count);
+      System.arraycopy(left, 0, copy.left, 0, count);
+      System.arraycopy(bottom, 0, copy.bottom, 0, count);
+      System.arraycopy(right, 0, copy.right, 0, count);
+      copy.size = count;
+      return copy;
+    }
+
+    // True when the last extent added sorts after the one before it.
+    private boolean ordered(boolean vertical) {
+      if (size < 2) {
+        return true;
+      }
+      int[] starts = vertical ? top : left;
+      int[] ends = vertical ? bottom : right;
+      return starts[size - 1] >= starts[size - 2] && ends[size - 1] >= ends[size - 2];
+    }
+  }
+}
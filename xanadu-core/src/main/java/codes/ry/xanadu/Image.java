@@ -5,60 +5,79 @@ public interface Image {
 
   char at(int i, int j);
 
+  default void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    for (int j = jFrom; j < jTo; j++) {
+      dst[off++] = at(i, j);
+    }
+  }
+
+  // Every cell outside the returned rect is blank and unstyled; null means unbounded.
+  default Rect bounds() {
+    return null;
+  }
+
+  // True when the cells never change and reading them has no side effects, so rows may be read on
+  // several threads at once. Only such images are rasterized in parallel.
+  default boolean immutable() {
+    return false;
+  }
+
+  default Image bounded(Rect rect) {
+    return Images.window(this, rect.top, rect.left, rect.bottom, rect.right);
+  }
+
   default Image overlay(Image m) {
-    return (i, j) -> {
-      char c = m.at(i, j);
-      return c != ' ' ? c : at(i, j);
-    };
+    return Layers.overlay(this, m);
   }
 
   default Image underlay(Image m) {
-    return (i, j) -> {
-      char c = at(i, j);
-      return c != ' ' ? c : m.at(i, j);
-    };
+    return Layers.overlay(m, this);
   }
 
   default Image combine(Image m, Style style) {
-    return (i, j) -> style.combine(at(i, j), m.at(i, j));
+    return Layers.combine(this, m, style);
   }
 
   default Image offset(int di, int dj) {
-    return (i, j) -> at(i - di, j - dj);
+    return Images.shift(this, di, dj);
   }
 
   default Image limit(int height, int width) {
-    return (i, j) -> {
-      if (i >= height || j >= width) {
-        return ' ';
-      } else {
-        return at(i, j);
-      }
-    };
+    return Images.window(this, Integer.MIN_VALUE, Integer.MIN_VALUE, height, width);
   }
 
   default Image crop(Rect rect) {
     return offset(rect.top, rect.left).limit(rect.height, rect.width);
   }
 
+  default Image cached(int tileSize) {
+    return CachedImage.of(this, tileSize);
+  }
+
+  default CellBuffer materialize(Rect rect) {
+    return CellBuffer.of(this, rect);
+  }
+
   static Image flood(char c) {
+    if (c == ' ') {
+      return Images.EMPTY;
+    }
     return (i, j) -> c;
   }
 
   static Image text(String s) {
-    return (i, j) -> i == 0 && j >= 0 && j < s.length() ? s.charAt(j) : ' ';
+    return new TextImage(TextLines.single(s));
   }
 
   static Image text(int cols, String s) {
-    var lines = Utils.wrapLines(s, cols);
-    return (i, j) -> i >= 0 && i < lines.size() ? text(lines.get(i)).at(0, j) : ' ';
+    return new TextImage(TextLines.wrap(s, cols));
   }
 
   static Image hbar(float length) {
     int[] parts = barParts(length);
     int full = parts[0];
     int eighths = parts[1];
-    return (i, j) -> {
+    Image bar = (i, j) -> {
       if (i != 0 || j < 0) {
         return ' ';
       }
@@ -70,6 +89,7 @@ public interface Image {
       }
       return ' ';
     };
+    return bar.bounded(new Rect(0, 0, 1, full + (eighths > 0 ? 1 : 0)));
   }
 
   static Image vbar(float length) {
@@ -77,7 +97,7 @@ public interface Image {
     int full = parts[0];
     int eighths = parts[1];
     int height = full + (eighths > 0 ? 1 : 0);
-    return (i, j) -> {
+    Image bar = (i, j) -> {
       if (j != 0 || i < 0) {
         return ' ';
       }
@@ -93,6 +113,7 @@ public interface Image {
       }
       return ' ';
     };
+    return bar.bounded(new Rect(0, 0, height, 1));
   }
 
   private static int[] barParts(float length) {
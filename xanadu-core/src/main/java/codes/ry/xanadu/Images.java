@@ -0,0 +1,249 @@
+package codes.ry.xanadu;
+
+import java.util.Arrays;
+
+final class Images {
+  static final Rect NOWHERE = new Rect(0, 0, 0, 0);
+  static final Image EMPTY = new Empty();
+
+  private Images() {}
+
+  static Image shift(Image image, int di, int dj) {
+    if (image instanceof StyledImage) {
+      return new StyledShifted((StyledImage) image, di, dj);
+    }
+    return new Shifted(image, di, dj);
+  }
+
+  static Image window(Image image, int top, int left, int bottom, int right) {
+    if (image instanceof StyledImage) {
+      return new StyledWindow((StyledImage) image, top, left, bottom, right);
+    }
+    return new Window(image, top, left, bottom, right);
+  }
+
+  static TextStyle styleAt(Image image, int i, int j) {
+    if (image instanceof StyledImage) {
+      return ((StyledImage) image).styleAt(i, j);
+    }
+    return TextStyle.NORMAL;
+  }
+
+  static void readStyles(Image image, int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+    if (image instanceof StyledImage) {
+      ((StyledImage) image).readStyles(i, jFrom, jTo, dst, off);
+    } else if (jTo > jFrom) {
+      Arrays.fill(dst, off, off + jTo - jFrom, TextStyle.NORMAL);
+    }
+  }
+
+  static boolean isEmpty(Rect rect) {
+    return rect.height <= 0 || rect.width <= 0;
+  }
+
+  // Null bounds mean unbounded, so the union is only bounded when both sides are.
+  static Rect union(Rect a, Rect b) {
+    if (a == null || b == null) {
+      return null;
+    }
+    if (isEmpty(a)) {
+      return b;
+    }
+    if (isEmpty(b)) {
+      return a;
+    }
+    int top = Math.min(a.top, b.top);
+    int left = Math.min(a.left, b.left);
+    int bottom = Math.max(a.bottom, b.bottom);
+    int right = Math.max(a.right, b.right);
+    return new Rect(top, left, bottom - top, right - left);
+  }
+
+  static Rect intersect(Rect rect, int top, int left, int bottom, int right) {
+    int t = Math.max(rect.top, top);
+    int l = Math.max(rect.left, left);
+    int b = Math.min(rect.bottom, bottom);
+    int r = Math.min(rect.right, right);
+    if (t >= b || l >= r) {
+      return NOWHERE;
+    }
+    return new Rect(t, l, b - t, r - l);
+  }
+
+  static void blank(char[] dst, int off, int length) {
+    if (length > 0) {
+      Arrays.fill(dst, off, off + length, ' ');
+    }
+  }
+
+  static void plain(TextStyle[] dst, int off, int length) {
+    if (length > 0) {
+      Arrays.fill(dst, off, off + length, TextStyle.NORMAL);
+    }
+  }
+
+  private static class Shifted implements Image {
+    final Image image;
+    final int di;
+    final int dj;
+
+    private Shifted(Image image, int di, int dj) {
+      this.image = image;
+      this.di = di;
+      this.dj = dj;
+    }
+
+    @Override
+    public char at(int i, int j) {
+      return image.at(i - di, j - dj);
+    }
+
+    @Override
+    public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+      image.readRow(i - di, jFrom - dj, jTo - dj, dst, off);
+    }
+
+    @Override
+    public Rect bounds() {
+      Rect bounds = image.bounds();
+      if (bounds == null || isEmpty(bounds)) {
+        return bounds;
+      }
+      return bounds.offset(di, dj);
+    }
+
+    @Override
+    public boolean immutable() {
+      return image.immutable();
+    }
+  }
+
+  private static final class StyledShifted extends Shifted implements StyledImage {
+    private StyledShifted(StyledImage image, int di, int dj) {
+      super(image, di, dj);
+    }
+
+    @Override
+    public TextStyle styleAt(int i, int j) {
+      return ((StyledImage) image).styleAt(i - di, j - dj);
+    }
+
+    @Override
+    public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+      ((StyledImage) image).readStyles(i - di, jFrom - dj, jTo - dj, dst, off);
+    }
+  }
+
+  // Cells outside [top, bottom) x [left, right) read as blank.
+  private static class Window implements Image {
+    final Image image;
+    final int top;
+    final int left;
+    final int bottom;
+    final int right;
+
+    private Window(Image image, int top, int left, int bottom, int right) {
+      this.image = image;
+      this.top = top;
+      this.left = left;
+      this.bottom = bottom;
+      this.right = right;
+    }
+
+    final boolean contains(int i, int j) {
+      return i >= top && i < bottom && j >= left && j < right;
+    }
+
+    @Override
+    public char at(int i, int j) {
+      return contains(i, j) ? image.at(i, j) : ' ';
+    }
+
+    @Override
+    public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+      if (i < top || i >= bottom) {
+        blank(dst, off, jTo - jFrom);
+        return;
+      }
+      int from = Math.max(jFrom, left);
+      int to = Math.min(jTo, right);
+      if (from >= to) {
+        blank(dst, off, jTo - jFrom);
+        return;
+      }
+      blank(dst, off, from - jFrom);
+      image.readRow(i, from, to, dst, off + from - jFrom);
+      blank(dst, off + to - jFrom, jTo - to);
+    }
+
+    @Override
+    public Rect bounds() {
+      Rect bounds = image.bounds();
+      if (bounds != null) {
+        return intersect(bounds, top, left, bottom, right);
+      }
+      if (top == Integer.MIN_VALUE || left == Integer.MIN_VALUE) {
+        return null;
+      }
+      if (top >= bottom || left >= right) {
+        return NOWHERE;
+      }
+      return new Rect(top, left, bottom - top, right - left);
+    }
+
+    @Override
+    public boolean immutable() {
+      return image.immutable();
+    }
+  }
+
+  private static final class StyledWindow extends Window implements StyledImage {
+    private StyledWindow(StyledImage image, int top, int left, int bottom, int right) {
+      super(image, top, left, bottom, right);
+    }
+
+    @Override
+    public TextStyle styleAt(int i, int j) {
+      return contains(i, j) ? ((StyledImage) image).styleAt(i, j) : TextStyle.NORMAL;
+    }
+
+    @Override
+    public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+      if (i < top || i >= bottom) {
+        plain(dst, off, jTo - jFrom);
+        return;
+      }
+      int from = Math.max(jFrom, left);
+      int to = Math.min(jTo, right);
+      if (from >= to) {
+        plain(dst, off, jTo - jFrom);
+        return;
+      }
+      plain(dst, off, from - jFrom);
+      ((StyledImage) image).readStyles(i, from, to, dst, off + from - jFrom);
+      plain(dst, off + to - jFrom, jTo - to);
+    }
+  }
+
+  private static final class Empty implements Image {
+    @Override
+    public char at(int i, int j) {
+      return ' ';
+    }
+
+    @Override
+    public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+      blank(dst, off, jTo - jFrom);
+    }
+
+    @Override
+    public Rect bounds() {
+      return NOWHERE;
+    }
+
+    @Override
+    public boolean immutable() {
+      return true;
+    }
+  }
+}
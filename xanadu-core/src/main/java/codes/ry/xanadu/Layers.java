@@ -0,0 +1,217 @@
+package codes.ry.xanadu;
+
+import java.util.Arrays;
+
+/**
+ * Image for a chain of {@link Image#overlay} and {@link Image#combine} calls.
+ *
+ * <p>Layers are kept flat in the order they were stacked, each with the style it was combined
+ * with (null for a plain overlay) and its {@link Image#bounds()}. A blank cell leaves both an
+ * overlay and a combine unchanged, so a layer can be skipped wherever its bounds don't reach; a
+ * row read only touches the layers whose bounds cross that row.
+ *
+ * <p>Chains extended from a common prefix share one growth buffer, as {@link FrameStack} does:
+ * each keeps final references to the buffer's arrays, taken under its lock, and reads only its
+ * own prefix.
+ */
+final class Layers implements StyledImage {
+  // Growth buffer shared with chains on the same prefix; only touched under its own lock.
+  private final Entries entries;
+  private final int count;
+  private final Image[] images;
+  private final Style[] styles;
+  private final Rect[] layerBounds;
+  private final boolean styled;
+  private final Rect bounds;
+
+  // Callers hold the lock on entries, or have not yet shared it.
+  private Layers(Entries entries, boolean styled, Rect bounds) {
+    this.entries = entries;
+    this.count = entries.size;
+    this.images = entries.images;
+    this.styles = entries.styles;
+    this.layerBounds = entries.bounds;
+    this.styled = styled;
+    this.bounds = bounds;
+  }
+
+  static Image overlay(Image base, Image top) {
+    return append(base, top, null);
+  }
+
+  static Image combine(Image base, Image top, Style style) {
+    return append(base, top, style);
+  }
+
+  private static Image append(Image base, Image top, Style style) {
+    if (base instanceof Layers) {
+      return ((Layers) base).extend(top, style);
+    }
+    Entries entries = new Entries(4);
+    entries.add(base, null);
+    entries.add(top, style);
+    boolean styled = base instanceof StyledImage || top instanceof StyledImage;
+    return new Layers(entries, styled, Images.union(base.bounds(), top.bounds()));
+  }
+
+  private Layers extend(Image top, Style style) {
+    boolean nextStyled = styled || top instanceof StyledImage;
+    Rect nextBounds = Images.union(bounds, top.bounds());
+    synchronized (entries) {
+      Entries target = entries.size == count ? entries : entries.copy(count);
+      target.add(top, style);
+      return new Layers(target, nextStyled, nextBounds);
+    }
+  }
+
+  @Override
+  public Rect bounds() {
+    return bounds;
+  }
+
+  @Override
+  public char at(int i, int j) {
+    char c = ' ';
+    for (int k = 0; k < count; k++) {
+      Rect b = layerBounds[k];
+      if (b != null && (i < b.top || i >= b.bottom || j < b.left || j >= b.right)) {
+        continue;
+      }
+      c = apply(styles[k], c, images[k].at(i, j));
+    }
+    return c;
+  }
+
+  @Override
+  public TextStyle styleAt(int i, int j) {
+    if (!styled) {
+      return TextStyle.NORMAL;
+    }
+    for (int k = 0; k < count; k++) {
+      Image image = images[k];
+      Rect b = layerBounds[k];
+      if (!(image instanceof StyledImage)
+          || b != null && (i < b.top || i >= b.bottom || j < b.left || j >= b.right)) {
+        continue;
+      }
+      if (((StyledImage) image).styleAt(i, j) == TextStyle.BOLD) {
+        return TextStyle.BOLD;
+      }
+    }
+    return TextStyle.NORMAL;
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    Images.blank(dst, off, jTo - jFrom);
+    char[] scratch = null;
+    for (int k = 0; k < count; k++) {
+      Rect b = layerBounds[k];
+      int from = jFrom;
+      int to = jTo;
+      if (b != null) {
+        if (i < b.top || i >= b.bottom) {
+          continue;
+        }
+        from = Math.max(jFrom, b.left);
+        to = Math.min(jTo, b.right);
+      }
+      if (from >= to) {
+        continue;
+      }
+      int start = off + from - jFrom;
+      if (k == 0) {
+        images[0].readRow(i, from, to, dst, start);
+        continue;
+      }
+      if (scratch == null) {
+        scratch = new char[jTo - jFrom];
+      }
+      images[k].readRow(i, from, to, scratch, 0);
+      Style style = styles[k];
+      for (int n = 0; n < to - from; n++) {
+        dst[start + n] = apply(style, dst[start + n], scratch[n]);
+      }
+    }
+  }
+
+  @Override
+  public void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+    Images.plain(dst, off, jTo - jFrom);
+    if (!styled) {
+      return;
+    }
+    TextStyle[] scratch = null;
+    for (int k = 0; k < count; k++) {
+      Image image = images[k];
+      if (!(image instanceof StyledImage)) {
+        continue;
+      }
+      Rect b = layerBounds[k];
+      int from = jFrom;
+      int to = jTo;
+      if (b != null) {
+        if (i < b.top || i >= b.bottom) {
+          continue;
+        }
+        from = Math.max(jFrom, b.left);
+        to = Math.min(jTo, b.right);
+      }
+      if (from >= to) {
+        continue;
+      }
+      if (scratch == null) {
+        scratch = new TextStyle[jTo - jFrom];
+      }
+      ((StyledImage) image).readStyles(i, from, to, scratch, 0);
+      int start = off + from - jFrom;
+      for (int n = 0; n < to - from; n++) {
+        if (scratch[n] == TextStyle.BOLD) {
+          dst[start + n] = TextStyle.BOLD;
+        }
+      }
+    }
+  }
+
+  private static char apply(Style style, char below, char above) {
+    if (style != null) {
+      return style.combine(below, above);
+    }
+    return above != ' ' ? above : below;
+  }
+
+  private static final class Entries {
+    private Image[] images;
+    private Style[] styles;
+    private Rect[] bounds;
+    private int size;
+
+    private Entries(int capacity) {
+      images = new Image[capacity];
+      styles = new Style[capacity];
+      bounds = new Rect[capacity];
+    }
+
+    private void add(Image image, Style style) {
+      if (size == images.length) {
+        int capacity = Math.max(4, size * 2);
+        images = Arrays.copyOf(images, capacity);
+        styles = Arrays.copyOf(styles, capacity);
+        bounds = Arrays.copyOf(bounds, capacity);
+      }
+      images[size] = image;
+      styles[size] = style;
+      bounds[size] = image.bounds();
+      size++;
+    }
+
+    private Entries copy(int count) {
+      Entries copy = new Entries(Math.max(4, count * 2));
+      System.arraycopy(images, 0, copy.images, 0, count);
+      System.arraycopy(styles, 0, copy.styles, 0, count);
+      System.arraycopy(bounds, 0, copy.bounds, 0, count);
+      copy.size = count;
+      return copy;
+    }
+  }
+}
@@ -1,30 +1,116 @@
 package codes.ry.xanadu;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Scroll implements Image {
+/**
+ * Append-only line store. Lines go into fixed-size chunks, each holding its text in one char
+ * array plus the end offset of every line, so any line is two array lookups away. Once the
+ * chunks held on the heap exceed the heap budget, the least recently read full chunks are written
+ * to a temp file and read back through a memory mapping.
+ */
+public class Scroll implements Image, AutoCloseable {
+  public static final long DEFAULT_HEAP_BUDGET_BYTES = 64L << 20;
+  private static final int CHUNK_SHIFT = 10;
+  private static final int CHUNK_LINES = 1 << CHUNK_SHIFT;
+
   private int offset = 0;
   public final int cols;
-  private final List<String> lines = new ArrayList<>();
+  private final long heapBudgetBytes;
+  private final List<Chunk> chunks = new ArrayList<>();
+  private int size;
+  private long heapBytes;
+  private long clock;
+  private FileChannel spill;
+  private long spillBytes;
 
   public Scroll(int cols) {
+    this(cols, DEFAULT_HEAP_BUDGET_BYTES);
+  }
+
+  public Scroll(int cols, long heapBudgetBytes) {
     this.cols = cols;
+    this.heapBudgetBytes = heapBudgetBytes;
   }
 
   @Override
   public char at(int i, int j) {
-    var s = lines.get(offset + i);
-    if (j >= s.length()) {
+    int index = offset + i;
+    if (index < 0 || index >= size || j < 0) {
       return ' ';
-    } else {
-      return s.charAt(j);
     }
+    Chunk chunk = chunk(index);
+    int line = index & (CHUNK_LINES - 1);
+    int start = chunk.start(line);
+    if (j >= chunk.ends[line] - start) {
+      return ' ';
+    }
+    return chunk.charAt(start + j);
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    int index = offset + i;
+    if (index < 0 || index >= size) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    Chunk chunk = chunk(index);
+    int line = index & (CHUNK_LINES - 1);
+    int start = chunk.start(line);
+    int from = Math.max(jFrom, 0);
+    int to = Math.min(jTo, chunk.ends[line] - start);
+    if (from >= to) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    Images.blank(dst, off, from - jFrom);
+    chunk.getChars(start + from, to - from, dst, off + from - jFrom);
+    Images.blank(dst, off + to - jFrom, jTo - to);
   }
 
   public void append(String line) {
-    lines.add(line);
+    Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+    if (chunk == null || chunk.count == CHUNK_LINES) {
+      chunk = new Chunk();
+      chunks.add(chunk);
+    }
+    chunk.append(line);
+    size++;
+    if (chunk.count == CHUNK_LINES) {
+      chunk.seal();
+      heapBytes += chunk.bytes();
+      spillColdChunks();
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int offset() {
+    return offset;
+  }
+
+  public String line(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+    }
+    Chunk chunk = chunk(index);
+    int line = index & (CHUNK_LINES - 1);
+    int start = chunk.start(line);
+    char[] chars = new char[chunk.ends[line] - start];
+    chunk.getChars(start, chars.length, chars, 0);
+    return new String(chars);
   }
 
   public void scroll(int d) {
@@ -32,15 +118,135 @@ public class Scroll implements Image {
     if (offset < 0) {
       offset = 0;
     }
-    if (offset > lines.size() - 1) {
-      offset = lines.size() - 1;
+    if (offset > size - 1) {
+      offset = size - 1;
     }
   }
 
   public void dump(PrintWriter w) {
-    for (int i = offset; i < lines.size(); i++) {
-      w.append(lines.get(i));
+    char[] buffer = new char[256];
+    for (int i = Math.max(0, offset); i < size; i++) {
+      Chunk chunk = chunk(i);
+      int line = i & (CHUNK_LINES - 1);
+      int start = chunk.start(line);
+      int length = chunk.ends[line] - start;
+      if (buffer.length < length) {
+        buffer = new char[Math.max(length, buffer.length * 2)];
+      }
+      chunk.getChars(start, length, buffer, 0);
+      w.write(buffer, 0, length);
       w.append('\n');
     }
   }
+
+  @Override
+  public void close() {
+    if (spill == null) {
+      return;
+    }
+    try {
+      spill.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      spill = null;
+    }
+  }
+
+  private Chunk chunk(int index) {
+    Chunk chunk = chunks.get(index >>> CHUNK_SHIFT);
+    chunk.lastRead = ++clock;
+    return chunk;
+  }
+
+  private void spillColdChunks() {
+    while (heapBytes > heapBudgetBytes) {
+      Chunk coldest = null;
+      for (Chunk chunk : chunks) {
+        if (chunk.chars != null
+            && chunk.count == CHUNK_LINES
+            && (coldest == null || chunk.lastRead < coldest.lastRead)) {
+          coldest = chunk;
+        }
+      }
+      if (coldest == null) {
+        return;
+      }
+      heapBytes -= coldest.bytes();
+      spill(coldest);
+    }
+  }
+
+  private void spill(Chunk chunk) {
+    try {
+      if (spill == null) {
+        Path path = Files.createTempFile("xanadu-scroll", ".lines");
+        path.toFile().deleteOnExit();
+        spill =
+            FileChannel.open(
+                path,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+      }
+      long bytes = chunk.bytes();
+      ByteBuffer out = ByteBuffer.allocate((int) bytes);
+      out.asCharBuffer().put(chunk.chars, 0, chunk.length);
+      long position = spillBytes;
+      while (out.hasRemaining()) {
+        spill.write(out, position + out.position());
+      }
+      spillBytes += bytes;
+      chunk.mapped = spill.map(FileChannel.MapMode.READ_ONLY, position, bytes).asCharBuffer();
+      chunk.chars = null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class Chunk {
+    private final int[] ends = new int[CHUNK_LINES];
+    private int count;
+    private char[] chars = new char[256];
+    private int length;
+    // Set once the chunk has been spilled; chars is null from then on.
+    private CharBuffer mapped;
+    private long lastRead;
+
+    private void append(String line) {
+      int next = length + line.length();
+      if (next > chars.length) {
+        chars = java.util.Arrays.copyOf(chars, Math.max(next, chars.length * 2));
+      }
+      line.getChars(0, line.length(), chars, length);
+      length = next;
+      ends[count++] = length;
+    }
+
+    private void seal() {
+      if (chars.length != length) {
+        chars = java.util.Arrays.copyOf(chars, length);
+      }
+    }
+
+    private long bytes() {
+      return (long) length * Character.BYTES;
+    }
+
+    private int start(int line) {
+      return line == 0 ? 0 : ends[line - 1];
+    }
+
+    private char charAt(int index) {
+      return chars != null ? chars[index] : mapped.get(index);
+    }
+
+    private void getChars(int from, int count, char[] dst, int off) {
+      if (chars != null) {
+        System.arraycopy(chars, from, dst, off, count);
+      } else {
+        mapped.get(from, dst, off, count);
+      }
+    }
+  }
 }
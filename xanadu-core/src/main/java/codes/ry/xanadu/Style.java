@@ -9,12 +9,52 @@ public final class Style {
   public static final int SOUTH = 0b0010;
   public static final int WEST = 0b0001;
 
-  private final Map<Character, Integer> masks;
+  // Box drawing (U+2500-U+257F) and block elements (U+2580-U+259F).
+  private static final char TABLE_START = '\u2500';
+  private static final int TABLE_SIZE = 0xa0;
+
+  private static final Style BOX = box(new HashMap<>());
+  private static final Style DOUBLE_BOX = doubleBox(new HashMap<>());
+  private static final Style BLOCKS = blocks(new HashMap<>());
+  private static final Style SUBCELL_BLOCKS = subcellBlocks(new HashMap<>());
+  private static final Style TREE = tree(new HashMap<>());
+  private static final Style FILL = fill(new HashMap<>());
+
+  // Mask per glyph in the table range; 0 means the glyph has no mask.
+  private final byte[] masks;
+  // Glyphs outside the table range, sorted, with their masks.
+  private final char[] otherGlyphs;
+  private final byte[] otherMasks;
   private final char[] glyphs;
+  // combined[maskA << 4 | maskB] is the glyph for the union of both masks, or 0.
+  private final char[] combined;
 
   private Style(Map<Character, Integer> masks, char[] glyphs) {
-    this.masks = masks;
+    this.masks = new byte[TABLE_SIZE];
+    java.util.TreeMap<Character, Integer> others = new java.util.TreeMap<>();
+    for (Map.Entry<Character, Integer> entry : masks.entrySet()) {
+      int index = entry.getKey() - TABLE_START;
+      if (index >= 0 && index < TABLE_SIZE) {
+        this.masks[index] = (byte) (entry.getValue() & 0b1111);
+      } else {
+        others.put(entry.getKey(), entry.getValue());
+      }
+    }
+    this.otherGlyphs = new char[others.size()];
+    this.otherMasks = new byte[others.size()];
+    int next = 0;
+    for (Map.Entry<Character, Integer> entry : others.entrySet()) {
+      otherGlyphs[next] = entry.getKey();
+      otherMasks[next] = (byte) (entry.getValue() & 0b1111);
+      next++;
+    }
     this.glyphs = glyphs;
+    this.combined = new char[256];
+    for (int a = 0; a < 16; a++) {
+      for (int b = 0; b < 16; b++) {
+        combined[a << 4 | b] = glyphs[a | b];
+      }
+    }
   }
 
   public char combine(char a, char b) {
@@ -24,14 +64,25 @@ public final class Style {
     if (b == ' ') {
       return a;
     }
-    Integer maskA = masks.get(a);
-    Integer maskB = masks.get(b);
-    if (maskA == null || maskB == null) {
+    int maskA = mask(a);
+    int maskB = mask(b);
+    if (maskA == 0 || maskB == 0) {
       return b;
     }
-    int mask = maskA | maskB;
-    char combined = glyphs[mask];
-    return combined == 0 ? b : combined;
+    char c = combined[maskA << 4 | maskB];
+    return c == 0 ? b : c;
+  }
+
+  private int mask(char c) {
+    int index = c - TABLE_START;
+    if (index >= 0 && index < TABLE_SIZE) {
+      return masks[index];
+    }
+    if (otherGlyphs.length == 0) {
+      return 0;
+    }
+    int found = java.util.Arrays.binarySearch(otherGlyphs, c);
+    return found < 0 ? 0 : otherMasks[found];
   }
 
   public char glyph(int mask) {
@@ -40,7 +91,10 @@ public final class Style {
   }
 
   public static Style box() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return BOX;
+  }
+
+  private static Style box(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     add(masks, glyphs, '─', EAST | WEST);
@@ -58,7 +112,10 @@ public final class Style {
   }
 
   public static Style doubleBox() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return DOUBLE_BOX;
+  }
+
+  private static Style doubleBox(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     add(masks, glyphs, '═', EAST | WEST);
@@ -76,7 +133,10 @@ public final class Style {
   }
 
   public static Style blocks() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return BLOCKS;
+  }
+
+  private static Style blocks(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     for (int i = 1; i < glyphs.length; i++) {
@@ -95,7 +155,10 @@ public final class Style {
   }
 
   public static Style subcellBlocks() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return SUBCELL_BLOCKS;
+  }
+
+  private static Style subcellBlocks(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     add(masks, glyphs, '▘', NORTH);
@@ -117,7 +180,10 @@ public final class Style {
   }
 
   public static Style tree() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return TREE;
+  }
+
+  private static Style tree(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     add(masks, glyphs, '│', NORTH | SOUTH);
@@ -130,7 +196,10 @@ public final class Style {
   }
 
   public static Style fill() {
-    Map<Character, Integer> masks = new HashMap<>();
+    return FILL;
+  }
+
+  private static Style fill(Map<Character, Integer> masks) {
     char[] glyphs = new char[16];
     glyphs[0] = ' ';
     for (int i = 1; i < glyphs.length; i++) {
@@ -149,40 +218,20 @@ public final class Style {
   }
 
   public Frame text(int cols, String txt) {
-    var lines = Utils.wrapLines(txt, cols);
-    int height = lines.size();
+    return text(cols, txt, Integer.MAX_VALUE);
+  }
+
+  // Wraps only the first maxLines lines, for callers that will clip the frame to that height.
+  public Frame text(int cols, String txt, int maxLines) {
+    var lines = TextLines.wrap(txt, cols, maxLines);
+    int height = lines.count();
     int width = Math.max(0, cols);
-    Image image = (i, j) -> {
-      if (i < 0 || i >= lines.size()) {
-        return ' ';
-      }
-      String line = lines.get(i);
-      if (j < 0 || j >= line.length()) {
-        return ' ';
-      }
-      return line.charAt(j);
-    };
-    return frame(height, width, image);
+    return frame(height, width, new TextImage(lines));
   }
 
   public Frame text(String txt) {
-    var lines = Utils.wrapLines(txt, Integer.MAX_VALUE);
-    int height = lines.size();
-    int width = 0;
-    for (String line : lines) {
-      width = Math.max(width, line.length());
-    }
-    Image image = (i, j) -> {
-      if (i < 0 || i >= lines.size()) {
-        return ' ';
-      }
-      String line = lines.get(i);
-      if (j < 0 || j >= line.length()) {
-        return ' ';
-      }
-      return line.charAt(j);
-    };
-    return frame(height, width, image);
+    var lines = TextLines.wrap(txt, Integer.MAX_VALUE);
+    return frame(lines.count(), lines.maxWidth(), new TextImage(lines));
   }
 
   public Frame hbar(int width, float length) {
@@ -2,4 +2,35 @@ package codes.ry.xanadu;
 
 public interface StyledImage extends Image {
   TextStyle styleAt(int i, int j);
+
+  default void readStyles(int i, int jFrom, int jTo, TextStyle[] dst, int off) {
+    for (int j = jFrom; j < jTo; j++) {
+      dst[off++] = styleAt(i, j);
+    }
+  }
+
+  @Override
+  default Image overlay(Image m) {
+    return StyledImages.overlay(this, m);
+  }
+
+  @Override
+  default Image underlay(Image m) {
+    return StyledImages.overlay(m, this);
+  }
+
+  @Override
+  default Image combine(Image m, Style style) {
+    return StyledImages.combine(this, m, style);
+  }
+
+  @Override
+  default Image offset(int di, int dj) {
+    return StyledImages.offset(this, di, dj);
+  }
+
+  @Override
+  default Image limit(int height, int width) {
+    return StyledImages.limit(this, height, width);
+  }
 }
@@ -0,0 +1,49 @@
+package codes.ry.xanadu;
+
+final class TextImage implements Image {
+  private final TextLines lines;
+  private final Rect bounds;
+
+  TextImage(TextLines lines) {
+    this.lines = lines;
+    this.bounds = new Rect(0, 0, lines.count(), lines.maxWidth());
+  }
+
+  @Override
+  public Rect bounds() {
+    return bounds;
+  }
+
+  @Override
+  public boolean immutable() {
+    return true;
+  }
+
+  @Override
+  public char at(int i, int j) {
+    if (i < 0 || i >= lines.count()) {
+      return ' ';
+    }
+    if (j < 0 || j >= lines.width(i)) {
+      return ' ';
+    }
+    return lines.charAt(i, j);
+  }
+
+  @Override
+  public void readRow(int i, int jFrom, int jTo, char[] dst, int off) {
+    if (i < 0 || i >= lines.count()) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    int from = Math.max(jFrom, 0);
+    int to = Math.min(jTo, lines.width(i));
+    if (from >= to) {
+      Images.blank(dst, off, jTo - jFrom);
+      return;
+    }
+    Images.blank(dst, off, from - jFrom);
+    lines.getChars(i, from, to, dst, off + from - jFrom);
+    Images.blank(dst, off + to - jFrom, jTo - to);
+  }
+}
@@ -0,0 +1,221 @@
+package codes.ry.xanadu;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Word-wrapped lines of a {@link CharSequence}, kept as offsets into it rather than as copies.
+ *
+ * <p>Wrapping splits on line breaks, then packs whitespace-separated words into lines of at most
+ * {@code cols} columns, one space between words. A line whose words were separated by anything
+ * other than a single space in the source is flagged, and its collapsed text is built the first
+ * time it is read. Blank source lines are kept, lines holding only whitespace are dropped, and a
+ * word wider than {@code cols} gets a line of its own.
+ */
+final class TextLines {
+  private final CharSequence text;
+  private final int cols;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int[] widths = new int[16];
+  private final BitSet irregular = new BitSet();
+  private String[] collapsed;
+  private int count;
+  private int maxWidth;
+  private int pos;
+  private boolean lineStart = true;
+
+  private TextLines(CharSequence text, int cols) {
+    this.text = text;
+    this.cols = cols;
+  }
+
+  static TextLines single(CharSequence text) {
+    TextLines lines = new TextLines(text, Integer.MAX_VALUE);
+    lines.add(0, text.length(), text.length(), false);
+    return lines;
+  }
+
+  static TextLines wrap(CharSequence text, int cols) {
+    return wrap(text, cols, Integer.MAX_VALUE);
+  }
+
+  // Wraps at most maxLines lines; the rest of the text is never scanned.
+  static TextLines wrap(CharSequence text, int cols, int maxLines) {
+    TextLines lines = new TextLines(text, cols);
+    while (lines.count < maxLines && lines.next()) {}
+    return lines;
+  }
+
+  int count() {
+    return count;
+  }
+
+  int maxWidth() {
+    return maxWidth;
+  }
+
+  int width(int line) {
+    return widths[line];
+  }
+
+  char charAt(int line, int j) {
+    if (irregular.get(line)) {
+      return collapsed(line).charAt(j);
+    }
+    return text.charAt(starts[line] + j);
+  }
+
+  void getChars(int line, int from, int to, char[] dst, int off) {
+    if (irregular.get(line)) {
+      collapsed(line).getChars(from, to, dst, off);
+    } else if (text instanceof String) {
+      ((String) text).getChars(starts[line] + from, starts[line] + to, dst, off);
+    } else {
+      int start = starts[line];
+      for (int j = from; j < to; j++) {
+        dst[off++] = text.charAt(start + j);
+      }
+    }
+  }
+
+  String line(int line) {
+    if (irregular.get(line)) {
+      return collapsed(line);
+    }
+    return text.subSequence(starts[line], ends[line]).toString();
+  }
+
+  private String collapsed(int line) {
+    if (collapsed == null) {
+      collapsed = new String[count];
+    }
+    String s = collapsed[line];
+    if (s == null) {
+      StringBuilder sb = new StringBuilder(widths[line]);
+      boolean space = false;
+      for (int p = starts[line]; p < ends[line]; p++) {
+        char c = text.charAt(p);
+        if (isSpace(c)) {
+          space = true;
+          continue;
+        }
+        if (space) {
+          sb.append(' ');
+          space = false;
+        }
+        sb.append(c);
+      }
+      s = sb.toString();
+      collapsed[line] = s;
+    }
+    return s;
+  }
+
+  private boolean next() {
+    int length = text.length();
+    while (pos <= length) {
+      int p = pos;
+      if (lineStart && (p == length || isBreak(text.charAt(p)))) {
+        add(p, p, 0, false);
+        pos = afterBreak(p);
+        return true;
+      }
+      while (p < length && isSpace(text.charAt(p))) {
+        p++;
+      }
+      if (p == length || isBreak(text.charAt(p))) {
+        pos = afterBreak(p);
+        lineStart = true;
+        continue;
+      }
+      int start = p;
+      int end = wordEnd(p);
+      long width = end - start;
+      boolean odd = false;
+      while (true) {
+        int s = end;
+        while (s < length && isSpace(text.charAt(s))) {
+          s++;
+        }
+        if (s == length || isBreak(text.charAt(s))) {
+          pos = s;
+          break;
+        }
+        int wordEnd = wordEnd(s);
+        if (width + 1 + (wordEnd - s) > cols) {
+          pos = s;
+          break;
+        }
+        if (s - end != 1 || text.charAt(end) != ' ') {
+          odd = true;
+        }
+        width += 1 + (wordEnd - s);
+        end = wordEnd;
+      }
+      lineStart = false;
+      add(start, end, (int) width, odd);
+      return true;
+    }
+    return false;
+  }
+
+  private void add(int start, int end, int width, boolean odd) {
+    if (count == starts.length) {
+      int capacity = count * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      widths = Arrays.copyOf(widths, capacity);
+    }
+    starts[count] = start;
+    ends[count] = end;
+    widths[count] = width;
+    if (odd) {
+      irregular.set(count);
+    }
+    maxWidth = Math.max(maxWidth, width);
+    count++;
+  }
+
+  private int wordEnd(int p) {
+    int length = text.length();
+    while (p < length) {
+      char c = text.charAt(p);
+      if (isSpace(c) || isBreak(c)) {
+        break;
+      }
+      p++;
+    }
+    return p;
+  }
+
+  private int afterBreak(int p) {
+    if (p >= text.length()) {
+      return text.length() + 1;
+    }
+    if (text.charAt(p) == '\r' && p + 1 < text.length() && text.charAt(p + 1) == '\n') {
+      return p + 2;
+    }
+    return p + 1;
+  }
+
+  // Inside a line the only whitespace left is space and tab; the rest are line breaks.
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t';
+  }
+
+  private static boolean isBreak(char c) {
+    switch (c) {
+      case '\n':
+      case '\u000B':
+      case '\u000C':
+      case '\r':
+      case '\u0085':
+      case '\u2028':
+      case '\u2029':
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package codes.ry.xanadu;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Least-recently-used store for the tiles of {@link Image#cached} images, bounded by the bytes
+ * their char and style planes occupy. One instance is shared by every cached image in the
+ * process. Tiles are keyed by an id of the image rather than the image itself, so the cache never
+ * keeps an image or its sources alive; tiles of a collected image just age out.
+ */
+public final class TileCache {
+  public static final long DEFAULT_CAPACITY_BYTES = 16L << 20;
+
+  private static final TileCache SHARED = new TileCache(DEFAULT_CAPACITY_BYTES);
+  private static final AtomicLong IDS = new AtomicLong();
+
+  private final LinkedHashMap<Key, CellBuffer> tiles = new LinkedHashMap<>(64, 0.75f, true);
+  private long capacityBytes;
+  private long sizeBytes;
+  private long hits;
+  private long misses;
+
+  public TileCache(long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+  }
+
+  public static TileCache shared() {
+    return SHARED;
+  }
+
+  public synchronized long capacityBytes() {
+    return capacityBytes;
+  }
+
+  public synchronized void setCapacityBytes(long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+    evict();
+  }
+
+  public synchronized long sizeBytes() {
+    return sizeBytes;
+  }
+
+  public synchronized int tileCount() {
+    return tiles.size();
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  public synchronized void clear() {
+    tiles.clear();
+    sizeBytes = 0;
+  }
+
+  static long nextId() {
+    return IDS.incrementAndGet();
+  }
+
+  CellBuffer tile(long owner, Image source, Rect rect) {
+    Key key = new Key(owner, rect.top, rect.left);
+    synchronized (this) {
+      CellBuffer tile = tiles.get(key);
+      if (tile != null) {
+        hits++;
+        return tile;
+      }
+      misses++;
+    }
+    // Rasterize outside the lock; two threads racing on one tile just compute it twice.
+    CellBuffer tile = CellBuffer.of(source, rect);
+    synchronized (this) {
+      CellBuffer previous = tiles.put(key, tile);
+      if (previous != null) {
+        sizeBytes -= bytes(previous);
+      }
+      sizeBytes += bytes(tile);
+      evict();
+    }
+    return tile;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Key, CellBuffer>> it = tiles.entrySet().iterator();
+    while (sizeBytes > capacityBytes && it.hasNext()) {
+      sizeBytes -= bytes(it.next().getValue());
+      it.remove();
+    }
+  }
+
+  private static long bytes(CellBuffer tile) {
+    long cells = (long) tile.rect.height * tile.rect.width;
+    return cells * Character.BYTES + (tile.hasStyles() ? cells : 0);
+  }
+
+  private static final class Key {
+    private final long owner;
+    private final int top;
+    private final int left;
+
+    private Key(long owner, int top, int left) {
+      this.owner = owner;
+      this.top = top;
+      this.left = left;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return owner == other.owner && top == other.top && left == other.left;
+    }
+
+    @Override
+    public int hashCode() {
+      return (Long.hashCode(owner) * 31 + top) * 31 + left;
+    }
+  }
+}
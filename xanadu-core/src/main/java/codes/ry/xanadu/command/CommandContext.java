@@ -2,8 +2,11 @@ package codes.ry.xanadu.command;
 
 import codes.ry.xanadu.Image;
 import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.FrameEncoder;
+import codes.ry.xanadu.render.RenderCache;
 import codes.ry.xanadu.render.RenderContext;
 import codes.ry.xanadu.render.RenderService;
+import codes.ry.xanadu.render.RenderSink;
 import java.io.PrintWriter;
 
 public final class CommandContext {
@@ -12,22 +15,37 @@ public final class CommandContext {
   public final RenderService renderService;
   public int maxWidth;
   public int maxHeight;
-  private final java.util.Map<String, Object> state;
+  private final ContextState state;
   private CommandService commandService;
-  private Continuation continuation;
-  private LogLevel logLevel;
-  private static final String LAST_EXCEPTION_KEY = "__xanadu.last_exception";
+  private volatile Continuation continuation;
+  private volatile LogLevel logLevel;
+  private static final ContextKey<Throwable> LAST_EXCEPTION =
+      ContextKey.of("__xanadu.last_exception", Throwable.class);
   private static final String ANSI_RESET = "\u001b[0m";
   private static final String ANSI_RED = "\u001b[31m";
   private static final String ANSI_YELLOW = "\u001b[33m";
   private volatile boolean cancelled;
-  private boolean failed;
+  private volatile Runnable cancelHook;
+  // Forks running stages of the current command on other threads; cancelled along with this.
+  private final java.util.Set<CommandContext> cancelForwards =
+      java.util.concurrent.ConcurrentHashMap.newKeySet();
+  private volatile boolean failed;
   private boolean allowContinuation;
   private boolean clipFrames;
+  private int parallelRenderCells;
+  private long renderCellBudget;
+  private long renderTimeoutMillis;
   private PrintWriter renderTap;
   private int renderTapWidth;
   private int renderTapHeight;
   private boolean renderTapClipFrames;
+  private FrameEncoder frameEncoder;
+  private RenderCache renderCache;
+  private Pipe upstream;
+  private Pipe downstream;
+  private Jobs jobs;
+  // Bytes of frames rendered to the screen through this context; chars when writing text.
+  private long renderedBytes;
 
   public CommandContext(
       PrintWriter out,
@@ -36,7 +54,8 @@ public final class CommandContext {
       CommandService commandService,
       int maxWidth,
       int maxHeight) {
-    this(out, style, renderService, commandService, maxWidth, maxHeight, new java.util.HashMap<>(), null);
+    this(out, style, renderService, commandService, maxWidth, maxHeight, new ContextState(), null);
+    this.jobs = new Jobs();
   }
 
   private CommandContext(
@@ -46,7 +65,7 @@ public final class CommandContext {
       CommandService commandService,
       int maxWidth,
       int maxHeight,
-      java.util.Map<String, Object> state,
+      ContextState state,
       Continuation continuation) {
     this.out = out;
     this.style = style;
@@ -58,32 +77,111 @@ public final class CommandContext {
     this.continuation = continuation;
     this.logLevel = LogLevel.INFO;
     this.clipFrames = true;
+    this.parallelRenderCells = RenderContext.DEFAULT_PARALLEL_CELLS;
     this.failed = false;
     this.allowContinuation = true;
   }
 
   public RenderContext renderContext() {
-    return new RenderContext(style, maxWidth, maxHeight, renderService, clipFrames);
+    return new RenderContext(
+            style, maxWidth, maxHeight, renderService, clipFrames, parallelRenderCells)
+        .withBudget(renderCellBudget, renderTimeoutMillis);
   }
 
   public void render(Image image) {
-    if (out instanceof CapturePrintWriter) {
-      ((CapturePrintWriter) out).setCaptureEnabled(false);
-    }
-    renderContext().dump(image, out);
-    if (out instanceof CapturePrintWriter) {
-      ((CapturePrintWriter) out).setCaptureEnabled(true);
+    if (renderCache != null && renderTap == null) {
+      RenderContext context = renderContext();
+      byte[] encoded = cachedRender(image, context, () -> image);
+      if (encoded != null) {
+        writeEncoded(encoded);
+        return;
+      }
     }
-    if (renderTap != null) {
-      new RenderContext(style, renderTapWidth, renderTapHeight, renderService, renderTapClipFrames)
-          .dump(image, renderTap);
+    dump(image);
+  }
+
+  private void dump(Image image) {
+    RenderContext context = renderContext();
+    RenderSink screen;
+    if (frameEncoder != null) {
+      // Text already printed must reach the terminal ahead of the frame.
+      out.flush();
+      screen = RenderSink.of(frameEncoder, maxWidth, maxHeight, clipFrames);
+    } else {
+      screen = RenderSink.of(out, maxWidth, maxHeight, clipFrames);
     }
+    // One pass over the cells feeds both the screen and the tap.
+    java.util.List<RenderSink> sinks =
+        renderTap == null
+            ? java.util.List.of(screen)
+            : java.util.List.of(
+                screen,
+                RenderSink.of(renderTap, renderTapWidth, renderTapHeight, renderTapClipFrames));
+    setCaptureEnabled(false);
+    context.dump(image, sinks);
+    setCaptureEnabled(true);
     out.flush();
+    renderedBytes += screen.written();
+  }
+
+  public long renderedBytes() {
+    return renderedBytes;
   }
 
   public void render(Object value) {
-    Image image = renderService.render(value, renderContext());
-    render(image);
+    RenderContext context = renderContext();
+    if (renderCache != null && renderTap == null) {
+      RenderContext cacheContext = context;
+      byte[] encoded =
+          cachedRender(value, context, () -> renderService.render(value, cacheContext));
+      if (encoded != null) {
+        writeEncoded(encoded);
+        return;
+      }
+    }
+    if (renderTap != null && clipFrames && !renderTapClipFrames) {
+      // An unclipped tap sees every row, so renderers must not stop at the screen height.
+      context = context.withClipFrames(false);
+    }
+    dump(renderService.render(value, context));
+  }
+
+  // The cached output for value, encoding it now if it has missed before; null when the value
+  // should be rendered straight through instead.
+  private byte[] cachedRender(
+      Object value, RenderContext context, java.util.function.Supplier<Image> image) {
+    if (!RenderCache.cacheable(value)) {
+      return null;
+    }
+    byte[] encoded = renderCache.get(value, context);
+    if (encoded != null || !renderCache.admit(value, context)) {
+      return encoded;
+    }
+    encoded = context.encode(image.get());
+    // Output cut short by the budget is not kept; under a deadline it depends on timing.
+    if (!context.exhausted()) {
+      renderCache.put(value, context, encoded);
+    }
+    return encoded;
+  }
+
+  private void writeEncoded(byte[] encoded) {
+    renderedBytes += encoded.length;
+    if (frameEncoder != null) {
+      out.flush();
+      frameEncoder.write(encoded);
+      return;
+    }
+    setCaptureEnabled(false);
+    out.write(new String(encoded, java.nio.charset.StandardCharsets.UTF_8));
+    setCaptureEnabled(true);
+    out.flush();
+  }
+
+  private void setCaptureEnabled(boolean enabled) {
+    if (out instanceof CapturePrintWriter) {
+      ((CapturePrintWriter) out).setCaptureEnabled(enabled);
+    }
   }
 
   public CommandService commandService() {
@@ -107,6 +205,28 @@ public final class CommandContext {
     return clipFrames;
   }
 
+  public void setParallelRenderCells(int parallelRenderCells) {
+    this.parallelRenderCells = parallelRenderCells;
+  }
+
+  public int parallelRenderCells() {
+    return parallelRenderCells;
+  }
+
+  // Bounds every render: cells renderers may produce and milliseconds it may take; 0 is no limit.
+  public void setRenderBudget(long cells, long timeoutMillis) {
+    this.renderCellBudget = Math.max(0, cells);
+    this.renderTimeoutMillis = Math.max(0, timeoutMillis);
+  }
+
+  public long renderCellBudget() {
+    return renderCellBudget;
+  }
+
+  public long renderTimeoutMillis() {
+    return renderTimeoutMillis;
+  }
+
   public void setRenderTap(PrintWriter writer, int maxWidth, int maxHeight, boolean clipFrames) {
     this.renderTap = writer;
     this.renderTapWidth = maxWidth;
@@ -114,6 +234,67 @@ public final class CommandContext {
     this.renderTapClipFrames = clipFrames;
   }
 
+  // Frames then bypass out and go to the encoder's channel; forked contexts keep using out.
+  public void setFrameEncoder(FrameEncoder frameEncoder) {
+    this.frameEncoder = frameEncoder;
+  }
+
+  public FrameEncoder frameEncoder() {
+    return frameEncoder;
+  }
+
+  // Null turns caching off; forked contexts share the cache.
+  public void setRenderCache(RenderCache renderCache) {
+    this.renderCache = renderCache;
+  }
+
+  public RenderCache renderCache() {
+    return renderCache;
+  }
+
+  // Commands call this when an image they rendered is replaced or changes in place.
+  public void invalidateRender(Object value) {
+    if (renderCache != null) {
+      renderCache.invalidate(value);
+    }
+  }
+
+  public void invalidateRenders() {
+    if (renderCache != null) {
+      renderCache.clear();
+    }
+  }
+
+  // Background jobs, shared with every fork of this context.
+  public Jobs jobs() {
+    return jobs;
+  }
+
+  // Records from the previous stage of a pipeline, or null when the command is not piped into.
+  public Pipe upstream() {
+    return upstream;
+  }
+
+  // True when a later pipeline stage reads what this command emits.
+  public boolean piped() {
+    return downstream != null;
+  }
+
+  // Sends a record to the next stage, blocking while it is behind; without one the record is
+  // rendered. Returns false once the next stage has stopped reading.
+  public boolean emit(Object record) {
+    if (downstream == null) {
+      render(record);
+      return true;
+    }
+    return downstream.put(record);
+  }
+
+  void setPipes(Pipe upstream, Pipe downstream) {
+    this.upstream = upstream;
+    this.downstream = downstream;
+  }
+
   public boolean allowContinuation() {
     return allowContinuation;
   }
@@ -124,9 +305,15 @@ public final class CommandContext {
 
   public CommandContext fork(PrintWriter out) {
     CommandContext context =
-        new CommandContext(out, style, renderService, commandService, maxWidth, maxHeight, state, null);
+        new CommandContext(
+            out, style, renderService, commandService, maxWidth, maxHeight, state.fork(), null);
     context.logLevel = logLevel;
     context.clipFrames = clipFrames;
+    context.parallelRenderCells = parallelRenderCells;
+    context.renderCache = renderCache;
+    context.renderCellBudget = renderCellBudget;
+    context.renderTimeoutMillis = renderTimeoutMillis;
+    context.jobs = jobs;
     return context;
   }
 
@@ -203,9 +390,9 @@ public final class CommandContext {
 
   public void recordException(Throwable error) {
     if (error == null) {
-      state.remove(LAST_EXCEPTION_KEY);
+      state.remove(LAST_EXCEPTION);
     } else {
-      state.put(LAST_EXCEPTION_KEY, error);
+      state.put(LAST_EXCEPTION, error);
       failed = true;
     }
   }
@@ -223,8 +410,7 @@ public final class CommandContext {
   }
 
   public Throwable lastException() {
-    Object value = state.get(LAST_EXCEPTION_KEY);
-    return value instanceof Throwable ? (Throwable) value : null;
+    return state.get(LAST_EXCEPTION);
   }
 
   public String formatStackTrace(Throwable error) {
@@ -252,6 +438,37 @@ public final class CommandContext {
 
   public void cancelCurrentCommand() {
     cancelled = true;
+    Runnable hook = cancelHook;
+    if (hook != null) {
+      hook.run();
+    }
+    for (CommandContext fork : cancelForwards) {
+      fork.cancelCurrentCommand();
+    }
+  }
+
+  void forwardCancel(CommandContext fork) {
+    cancelForwards.add(fork);
+  }
+
+  void stopForwardingCancel(CommandContext fork) {
+    cancelForwards.remove(fork);
+  }
+
+  // Run by cancelCurrentCommand, from the cancelling thread, to abort a call that polls nothing,
+  // such as a JDBC statement blocked in its driver. Null clears it.
+  public void onCancel(Runnable hook) {
+    this.cancelHook = hook;
+  }
+
+  // Run by close when the session this context and its forks belong to ends, to release what a
+  // command left open in the session's state, such as a database connection.
+  public void onClose(Runnable hook) {
+    state.onClose(hook);
+  }
+
+  public void close() {
+    state.close();
   }
 
   public boolean consumeCancel() {
@@ -262,27 +479,41 @@ public final class CommandContext {
     return false;
   }
 
+  public <T> T get(ContextKey<T> key) {
+    return state.get(key);
+  }
+
+  // Null removes the value.
+  public <T> void put(ContextKey<T> key, T value) {
+    state.put(key, value);
+  }
+
+  public void remove(ContextKey<?> key) {
+    state.remove(key);
+  }
+
+  // Atomically replaces the value with update(current); a null result removes it.
+  public <T> T compute(ContextKey<T> key, java.util.function.UnaryOperator<T> update) {
+    return state.compute(key, update);
+  }
+
+  public <T> T computeIfAbsent(ContextKey<T> key, java.util.function.Supplier<? extends T> value) {
+    return state.compute(key, current -> current != null ? current : value.get());
+  }
+
   public void put(String key, Object value) {
-    if (value == null) {
-      state.remove(key);
-    } else {
-      state.put(key, value);
-    }
+    state.put(ContextKey.of(key, Object.class), value);
   }
 
   public Object get(String key) {
-    return state.get(key);
+    return state.get(ContextKey.of(key, Object.class));
   }
 
   public <T> T get(String key, Class<T> type) {
-    Object value = state.get(key);
-    if (type.isInstance(value)) {
-      return type.cast(value);
-    }
-    return null;
+    return state.get(ContextKey.of(key, type));
   }
 
   public void remove(String key) {
-    state.remove(key);
+    state.remove(ContextKey.of(key, Object.class));
   }
 }
@@ -0,0 +1,23 @@
+package codes.ry.xanadu.command;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for one command run, timed from start to result. */
+@Name("codes.ry.xanadu.CommandExecuted")
+@Label("Command Executed")
+@Category({"Xanadu", "Commands"})
+@Description("A console command and how it ended")
+final class CommandExecuted extends jdk.jfr.Event {
+  @Label("Name")
+  String name;
+
+  @Label("Argument Count")
+  int argCount;
+
+  // SUCCESS, FAILURE, or ERROR when the command threw.
+  @Label("Result")
+  String result;
+}
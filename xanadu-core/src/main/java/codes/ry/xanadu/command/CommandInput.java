@@ -6,11 +6,49 @@ public final class CommandInput {
   public final String raw;
   public final String name;
   public final List<String> args;
+  // The stage this one pipes into, or null.
+  public final CommandInput next;
+  // Set on the first stage of a line ending in '&'.
+  public final boolean background;
+  // The line as one command, its '|'s kept as text; set on the first stage of a pipeline and run
+  // instead when a later stage names no command.
+  final CommandInput unsplit;
 
   public CommandInput(String raw, String name, List<String> args) {
+    this(raw, name, args, null);
+  }
+
+  public CommandInput(String raw, String name, List<String> args, CommandInput next) {
+    this(raw, name, args, next, false);
+  }
+
+  public CommandInput(
+      String raw, String name, List<String> args, CommandInput next, boolean background) {
+    this(raw, name, args, next, background, null);
+  }
+
+  CommandInput(
+      String raw,
+      String name,
+      List<String> args,
+      CommandInput next,
+      boolean background,
+      CommandInput unsplit) {
     this.raw = raw;
     this.name = name;
     this.args = List.copyOf(args);
+    this.next = next;
+    this.background = background;
+    this.unsplit = unsplit;
+  }
+
+  // The whole line as typed, every stage included, without a trailing '&'.
+  public String line() {
+    StringBuilder sb = new StringBuilder(raw.trim());
+    for (CommandInput stage = next; stage != null; stage = stage.next) {
+      sb.append(" | ").append(stage.raw.trim());
+    }
+    return sb.toString();
   }
 
   public String tail() {
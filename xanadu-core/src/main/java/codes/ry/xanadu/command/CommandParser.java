@@ -14,6 +14,108 @@ public final class CommandParser {
     if (trimmed.isEmpty()) {
       return null;
     }
+    int amp = backgroundIndex(line);
+    if (amp >= 0) {
+      CommandInput input = parseLine(line.substring(0, amp), true);
+      if (input != null) {
+        return input;
+      }
+    }
+    return parseLine(line, false);
+  }
+
+  private static CommandInput parseLine(String line, boolean background) {
+    // A definition keeps its bars; the macro body is parsed when it runs.
+    CommandInput input = isDefinition(line) ? parseStage(line, null) : parsePipeline(line);
+    if (input == null || input.next == null && !background) {
+      return input;
+    }
+    CommandInput unsplit = input.next == null ? null : parseStage(line, null);
+    return new CommandInput(input.raw, input.name, input.args, input.next, background, unsplit);
+  }
+
+  private static CommandInput parsePipeline(String line) {
+    if (line.trim().isEmpty()) {
+      return null;
+    }
+    int pipe = pipeIndex(line);
+    if (pipe >= 0) {
+      // A '|' with nothing on one side is kept as an ordinary character.
+      CommandInput next = parsePipeline(line.substring(pipe + 1));
+      CommandInput head = next == null ? null : parseStage(line.substring(0, pipe), next);
+      if (head != null) {
+        return head;
+      }
+    }
+    return parseStage(line, null);
+  }
+
+  private static boolean isDefinition(String line) {
+    String trimmed = line.stripLeading();
+    return trimmed.regionMatches(true, 0, "def", 0, 3)
+        && (trimmed.length() == 3 || Character.isWhitespace(trimmed.charAt(3)));
+  }
+
+  // Index of the first '|' that separates pipeline stages: with whitespace on both sides, not
+  // quoted and not escaped, so SQL's "||" and a bitwise "a|b" stay in the statement. -1 when
+  // there is none. A backslash inside quotes is literal, as in SQL strings.
+  private static int pipeIndex(String line) {
+    char quote = 0;
+    boolean escaping = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (escaping) {
+        escaping = false;
+      } else if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\\') {
+        escaping = true;
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '|'
+          && i > 0
+          && i + 1 < line.length()
+          && Character.isWhitespace(line.charAt(i - 1))
+          && Character.isWhitespace(line.charAt(i + 1))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Index of a '&' ending the line that asks for it to run in the background: not quoted, not
+  // escaped and not part of "&&". -1 when there is none.
+  private static int backgroundIndex(String line) {
+    char quote = 0;
+    boolean escaping = false;
+    int amp = -1;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (escaping) {
+        escaping = false;
+        amp = -1;
+      } else if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\\') {
+        escaping = true;
+        amp = -1;
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+        amp = -1;
+      } else if (c == '&') {
+        amp = amp < 0 && (i == 0 || line.charAt(i - 1) != '&') ? i : -2;
+      } else if (!Character.isWhitespace(c)) {
+        amp = -1;
+      }
+    }
+    return quote == 0 && amp >= 0 ? amp : -1;
+  }
+
+  private static CommandInput parseStage(String line, CommandInput next) {
     List<String> tokens = new ArrayList<>();
     StringBuilder current = new StringBuilder();
     char quote = 0;
@@ -58,6 +160,6 @@ public final class CommandParser {
     }
     String name = tokens.get(0);
     List<String> args = tokens.subList(1, tokens.size());
-    return new CommandInput(line, name, args);
+    return new CommandInput(line, name, args, next);
   }
 }
@@ -13,6 +13,18 @@ public interface CommandProvider {
     return java.util.Set.of();
   }
 
+  // True when the provider may support names missing from commandNames(), so CommandService
+  // must ask it about every command rather than only the names it declares.
+  default boolean dynamicNames() {
+    return false;
+  }
+
+  // The provider one console session should use. Those holding state a session builds up, such as
+  // its macros, return a fresh instance; the rest are shared.
+  default CommandProvider forSession() {
+    return this;
+  }
+
   default java.util.List<String> subcommands(String commandName) {
     return java.util.List.of();
   }
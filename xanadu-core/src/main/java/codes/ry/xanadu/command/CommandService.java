@@ -1,47 +1,196 @@
 package codes.ry.xanadu.command;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Resolves command lines to commands. The providers in effect are indexed by the lower-cased
+ * names they declare, so a lookup only asks the providers that claim the name, plus those with
+ * {@link CommandProvider#dynamicNames dynamic names}, in priority order. The index is built once
+ * per service; {@link #enable} and {@link #disable} return a new service with a new index.
+ *
+ * <p>Every command found is wrapped to record its run in the {@link CommandStats} the service
+ * shares with those derived from it.
+ */
 public final class CommandService {
+  private static final CommandProvider[] NONE = new CommandProvider[0];
+
   private final List<CommandProvider> providers;
   private final List<CommandProvider> enabled;
   private final List<CommandProvider> disabled;
+  // Providers in effect, enabled ones first.
+  private final CommandProvider[] active;
+  private final Map<String, CommandProvider[]> byName = new HashMap<>();
+  private final CommandProvider[] dynamic;
+  private final Set<String> staticNames = new TreeSet<>();
+  private final CommandStats stats;
 
   public CommandService(List<CommandProvider> providers) {
-    this(providers, List.of(), List.of());
+    this(providers, List.of(), List.of(), new CommandStats());
   }
 
   private CommandService(
       List<CommandProvider> providers,
       List<CommandProvider> enabled,
-      List<CommandProvider> disabled) {
+      List<CommandProvider> disabled,
+      CommandStats stats) {
+    this.stats = stats;
     this.providers = List.copyOf(providers);
     this.enabled = List.copyOf(enabled);
     this.disabled = List.copyOf(disabled);
+    this.active = activeProviders();
+    this.dynamic = index();
   }
 
   public Optional<Command> find(CommandInput input) {
-    for (CommandProvider provider : enabled) {
-      if (disabled.contains(provider)) {
-        continue;
+    if (input.background) {
+      Optional<Command> command =
+          find(
+              new CommandInput(
+                  input.raw, input.name, input.args, input.next, false, input.unsplit));
+      String line = input.line();
+      return command.map(
+          found ->
+              context -> {
+                Job job = context.jobs().start(line, found, context);
+                context.out.println("[" + job.id + "] " + line);
+                context.out.flush();
+                return CommandResult.SUCCESS;
+              });
+    }
+    Optional<Command> first = findStage(input);
+    if (input.next == null) {
+      return first;
+    }
+    List<Command> stages = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (CommandInput stage = input; stage != null; stage = stage.next) {
+      Optional<Command> command = stage == input ? first : findStage(stage);
+      if (command.isEmpty()) {
+        // Free text such as "agent explain a | b" was never meant as a pipeline.
+        if (input.unsplit != null) {
+          Optional<Command> whole = findStage(input.unsplit);
+          if (whole.isPresent()) {
+            return whole;
+          }
+        }
+        if (stage == input) {
+          return command;
+        }
+        // Nothing runs when any stage is unknown.
+        String name = stage.name;
+        return Optional.of(
+            context -> {
+              context.error("Unknown command: " + name);
+              return CommandResult.FAILURE;
+            });
       }
+      stages.add(command.get());
+      names.add(stage.name);
+    }
+    return Optional.of(new Pipeline(stages, names));
+  }
+
+  // Like find, but remembers enough to reuse the command for the same input later; null when no
+  // provider supports it. Pipelines and background jobs are resolved afresh every time.
+  Resolution resolve(CommandInput input) {
+    if (input.next != null || input.background) {
+      Optional<Command> command = find(input);
+      return command.isEmpty() ? null : new Resolution(this, null, NONE, command.get());
+    }
+    CommandProvider[] candidates = candidates(input.name);
+    for (int i = 0; i < candidates.length; i++) {
+      CommandProvider provider = candidates[i];
       if (provider.supports(input)) {
-        return Optional.of(provider.commandFor(input));
+        List<CommandProvider> ahead = new ArrayList<>();
+        for (int k = 0; k < i; k++) {
+          if (isDynamic(candidates[k])) {
+            ahead.add(candidates[k]);
+          }
+        }
+        return new Resolution(this, provider, ahead.toArray(NONE), commandFor(provider, input));
       }
     }
-    for (CommandProvider provider : providers) {
-      if (disabled.contains(provider) || enabled.contains(provider)) {
-        continue;
+    return null;
+  }
+
+  // A resolution stays valid while the service is the same and no provider with dynamic names
+  // has changed its answer for the input.
+  boolean valid(Resolution resolution, CommandInput input) {
+    if (resolution.service != this || resolution.provider == null) {
+      return false;
+    }
+    for (CommandProvider provider : resolution.dynamicAhead) {
+      if (provider.supports(input)) {
+        return false;
+      }
+    }
+    return !isDynamic(resolution.provider) || resolution.provider.supports(input);
+  }
+
+  private boolean isDynamic(CommandProvider provider) {
+    for (CommandProvider candidate : dynamic) {
+      if (candidate == provider) {
+        return true;
       }
+    }
+    return false;
+  }
+
+  private Optional<Command> findStage(CommandInput input) {
+    for (CommandProvider provider : candidates(input.name)) {
       if (provider.supports(input)) {
-        return Optional.of(provider.commandFor(input));
+        return Optional.of(commandFor(provider, input));
       }
     }
     return Optional.empty();
   }
 
+  private Command commandFor(CommandProvider provider, CommandInput input) {
+    return stats.wrap(input, provider.commandFor(input));
+  }
+
+  public CommandStats stats() {
+    return stats;
+  }
+
+  /** The provider in effect that declares {@code commandName}, or null. */
+  public CommandProvider providerFor(String commandName) {
+    for (CommandProvider provider : candidates(commandName)) {
+      if (provider.commandNames().contains(commandName)) {
+        return provider;
+      }
+    }
+    return null;
+  }
+
+  /** The names declared by the providers in effect, sorted. */
+  public Set<String> commandNames() {
+    if (dynamic.length == 0) {
+      return java.util.Collections.unmodifiableSet(staticNames);
+    }
+    Set<String> names = new TreeSet<>(staticNames);
+    for (CommandProvider provider : dynamic) {
+      names.addAll(provider.commandNames());
+    }
+    return names;
+  }
+
+  public Set<String> subcommands(String commandName) {
+    Set<String> subs = new TreeSet<>();
+    for (CommandProvider provider : candidates(commandName)) {
+      subs.addAll(provider.subcommands(commandName));
+    }
+    return subs;
+  }
+
   public CommandService enable(CommandProvider provider) {
     var nextEnabled = new ArrayList<>(enabled);
     if (!nextEnabled.contains(provider)) {
@@ -49,7 +198,7 @@ public final class CommandService {
     }
     var nextDisabled = new ArrayList<>(disabled);
     nextDisabled.remove(provider);
-    return new CommandService(providers, nextEnabled, nextDisabled);
+    return new CommandService(providers, nextEnabled, nextDisabled, stats);
   }
 
   public CommandService disable(CommandProvider provider) {
@@ -59,7 +208,38 @@ public final class CommandService {
     }
     var nextEnabled = new ArrayList<>(enabled);
     nextEnabled.remove(provider);
-    return new CommandService(providers, nextEnabled, nextDisabled);
+    return new CommandService(providers, nextEnabled, nextDisabled, stats);
+  }
+
+  /**
+   * A service for one console session: the same providers, except those whose {@link
+   * CommandProvider#forSession} gives a fresh instance. Stats stay shared.
+   */
+  public CommandService forSession() {
+    Map<CommandProvider, CommandProvider> fresh = new IdentityHashMap<>();
+    boolean changed = false;
+    for (CommandProvider provider : providers) {
+      CommandProvider session = provider.forSession();
+      fresh.put(provider, session);
+      changed |= session != provider;
+    }
+    if (!changed) {
+      return this;
+    }
+    return new CommandService(
+        forSession(providers, fresh),
+        forSession(enabled, fresh),
+        forSession(disabled, fresh),
+        stats);
+  }
+
+  private static List<CommandProvider> forSession(
+      List<CommandProvider> list, Map<CommandProvider, CommandProvider> fresh) {
+    List<CommandProvider> mapped = new ArrayList<>(list.size());
+    for (CommandProvider provider : list) {
+      mapped.add(fresh.computeIfAbsent(provider, CommandProvider::forSession));
+    }
+    return mapped;
   }
 
   public List<CommandProvider> providers() {
@@ -73,4 +253,74 @@ public final class CommandService {
   public List<CommandProvider> disabledProviders() {
     return disabled;
   }
+
+  private CommandProvider[] candidates(String commandName) {
+    if (commandName == null) {
+      return dynamic;
+    }
+    CommandProvider[] found = byName.get(commandName.toLowerCase(Locale.ROOT));
+    return found != null ? found : dynamic;
+  }
+
+  private CommandProvider[] activeProviders() {
+    List<CommandProvider> ordered = new ArrayList<>();
+    for (CommandProvider provider : enabled) {
+      if (!disabled.contains(provider)) {
+        ordered.add(provider);
+      }
+    }
+    for (CommandProvider provider : providers) {
+      if (!disabled.contains(provider) && !enabled.contains(provider)) {
+        ordered.add(provider);
+      }
+    }
+    return ordered.toArray(NONE);
+  }
+
+  // Fills byName and staticNames; returns the providers that must be probed for every name.
+  // Each name's candidates keep the priority order of active, dynamic providers included.
+  private CommandProvider[] index() {
+    Map<String, List<CommandProvider>> lists = new HashMap<>();
+    List<CommandProvider> probed = new ArrayList<>();
+    for (CommandProvider provider : active) {
+      Set<String> names = provider.commandNames();
+      if (provider.dynamicNames() || names.isEmpty()) {
+        probed.add(provider);
+        for (List<CommandProvider> list : lists.values()) {
+          list.add(provider);
+        }
+        continue;
+      }
+      staticNames.addAll(names);
+      for (String name : names) {
+        List<CommandProvider> list =
+            lists.computeIfAbsent(name.toLowerCase(Locale.ROOT), key -> new ArrayList<>(probed));
+        if (list.isEmpty() || list.get(list.size() - 1) != provider) {
+          list.add(provider);
+        }
+      }
+    }
+    for (Map.Entry<String, List<CommandProvider>> entry : lists.entrySet()) {
+      byName.put(entry.getKey(), entry.getValue().toArray(NONE));
+    }
+    return probed.toArray(NONE);
+  }
+
+  static final class Resolution {
+    private final CommandService service;
+    private final CommandProvider provider;
+    private final CommandProvider[] dynamicAhead;
+    final Command command;
+
+    private Resolution(
+        CommandService service,
+        CommandProvider provider,
+        CommandProvider[] dynamicAhead,
+        Command command) {
+      this.service = service;
+      this.provider = provider;
+      this.dynamicAhead = dynamicAhead;
+      this.command = command;
+    }
+  }
 }
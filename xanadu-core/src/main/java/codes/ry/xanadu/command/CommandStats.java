@@ -0,0 +1,91 @@
+package codes.ry.xanadu.command;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, error and rendered-byte counts per command name. A command is wrapped once when it is
+ * resolved, with its name's entry already looked up, so running it again and again, as scripts,
+ * macros and the agent loop do, only reads the clock and bumps counters. Each run is also a
+ * {@link CommandExecuted} Flight Recorder event; while no recording wants it, the event object
+ * does not escape and the JIT removes it.
+ */
+public final class CommandStats {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public Command wrap(CommandInput input, Command command) {
+    Entry entry = entry(input.name);
+    int argCount = input.args.size();
+    return context -> {
+      CommandExecuted event = new CommandExecuted();
+      event.begin();
+      boolean failedBefore = context.failed();
+      long bytesBefore = context.renderedBytes();
+      long start = System.nanoTime();
+      String outcome = "ERROR";
+      boolean failed = true;
+      try {
+        CommandResult result = command.execute(context);
+        failed = result != null && result.isFailure() || !failedBefore && context.failed();
+        outcome = failed ? "FAILURE" : "SUCCESS";
+        return result;
+      } finally {
+        entry.latency.record(System.nanoTime() - start);
+        if (failed) {
+          entry.errors.incrementAndGet();
+        }
+        entry.renderedBytes.addAndGet(context.renderedBytes() - bytesBefore);
+        if (event.shouldCommit()) {
+          event.name = entry.name;
+          event.argCount = argCount;
+          event.result = outcome;
+          event.commit();
+        }
+      }
+    };
+  }
+
+  public Entry entry(String name) {
+    return entries.computeIfAbsent(name.toLowerCase(java.util.Locale.ROOT), Entry::new);
+  }
+
+  // Entries that have run at least once, by name.
+  public Map<String, Entry> entries() {
+    Map<String, Entry> sorted = new TreeMap<>();
+    for (Entry entry : entries.values()) {
+      if (entry.latency.count() > 0) {
+        sorted.put(entry.name, entry);
+      }
+    }
+    return sorted;
+  }
+
+  public void reset() {
+    for (Entry entry : entries.values()) {
+      entry.latency.reset();
+      entry.errors.set(0);
+      entry.renderedBytes.set(0);
+    }
+  }
+
+  public static final class Entry {
+    public final String name;
+    public final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong renderedBytes = new AtomicLong();
+
+    private Entry(String name) {
+      this.name = name;
+    }
+
+    public long errors() {
+      return errors.get();
+    }
+
+    public long renderedBytes() {
+      return renderedBytes.get();
+    }
+  }
+}
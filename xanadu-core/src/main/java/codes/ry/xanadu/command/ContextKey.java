@@ -0,0 +1,51 @@
+package codes.ry.xanadu.command;
+
+/**
+ * Typed name for a value in a {@link CommandContext}'s state. Keys are identified by name alone,
+ * so two keys with one name address the same value. Shared keys hold one value for a context and
+ * all its forks; local keys are written to the fork that sets them, and a fork reads its
+ * parent's value until it sets its own.
+ */
+public final class ContextKey<T> {
+  public final String name;
+  public final Class<T> type;
+  private final boolean local;
+
+  private ContextKey(String name, Class<T> type, boolean local) {
+    this.name = name;
+    this.type = type;
+    this.local = local;
+  }
+
+  public static <T> ContextKey<T> of(String name, Class<T> type) {
+    return new ContextKey<>(name, type, false);
+  }
+
+  public static <T> ContextKey<T> local(String name, Class<T> type) {
+    return new ContextKey<>(name, type, true);
+  }
+
+  public boolean isLocal() {
+    return local;
+  }
+
+  // The value as a T, or null when it is missing or of another type.
+  T cast(Object value) {
+    return type.isInstance(value) ? type.cast(value) : null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ContextKey && ((ContextKey<?>) o).name.equals(name);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,123 @@
+package codes.ry.xanadu.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * State behind a {@link CommandContext} and its forks. Shared keys live in one concurrent map
+ * for the whole family of contexts; local keys live in an overlay per fork that falls back to
+ * the parent's overlay. Updates through {@link #compute} are atomic per key. Close hooks, like
+ * shared keys, belong to the whole family.
+ */
+final class ContextState {
+  // Marks a local key removed in a fork while the parent still has a value.
+  private static final Object REMOVED = new Object();
+
+  private final ConcurrentHashMap<String, Object> shared;
+  private final ConcurrentHashMap<String, Object> local = new ConcurrentHashMap<>();
+  private final ContextState parent;
+  private final List<Runnable> closeHooks;
+
+  ContextState() {
+    this.shared = new ConcurrentHashMap<>();
+    this.parent = null;
+    this.closeHooks = new ArrayList<>();
+  }
+
+  private ContextState(ContextState parent) {
+    this.shared = parent.shared;
+    this.parent = parent;
+    this.closeHooks = parent.closeHooks;
+  }
+
+  ContextState fork() {
+    return new ContextState(this);
+  }
+
+  <T> T get(ContextKey<T> key) {
+    return key.cast(raw(key));
+  }
+
+  void put(ContextKey<?> key, Object value) {
+    if (value == null) {
+      remove(key);
+    } else if (key.isLocal()) {
+      local.put(key.name, value);
+    } else {
+      shared.put(key.name, value);
+    }
+  }
+
+  void remove(ContextKey<?> key) {
+    if (!key.isLocal()) {
+      shared.remove(key.name);
+    } else if (parent == null) {
+      local.remove(key.name);
+    } else {
+      local.put(key.name, REMOVED);
+    }
+  }
+
+  <T> T compute(ContextKey<T> key, UnaryOperator<T> update) {
+    Object result;
+    if (key.isLocal()) {
+      result =
+          local.compute(
+              key.name,
+              (name, old) -> {
+                Object current = old != null ? old : parent == null ? null : parent.raw(key);
+                T next = update.apply(current == REMOVED ? null : key.cast(current));
+                return next != null ? next : parent == null ? null : REMOVED;
+              });
+    } else {
+      result = shared.compute(key.name, (name, old) -> update.apply(key.cast(old)));
+    }
+    return result == REMOVED ? null : key.cast(result);
+  }
+
+  void onClose(Runnable hook) {
+    synchronized (closeHooks) {
+      closeHooks.add(hook);
+    }
+  }
+
+  // Runs and forgets the hooks, latest first. Every hook runs; the first failure is rethrown
+  // with the rest suppressed.
+  void close() {
+    List<Runnable> hooks;
+    synchronized (closeHooks) {
+      hooks = new ArrayList<>(closeHooks);
+      closeHooks.clear();
+    }
+    RuntimeException failure = null;
+    for (int i = hooks.size() - 1; i >= 0; i--) {
+      try {
+        hooks.get(i).run();
+      } catch (RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private Object raw(ContextKey<?> key) {
+    if (!key.isLocal()) {
+      return shared.get(key.name);
+    }
+    for (ContextState state = this; state != null; state = state.parent) {
+      Object value = state.local.get(key.name);
+      if (value != null) {
+        return value == REMOVED ? null : value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,133 @@
+package codes.ry.xanadu.command;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A command running in the background on its own thread and forked context. What it prints is
+ * kept in a buffer until someone reads it with {@link #output}, up to {@link #OUTPUT_LIMIT} chars.
+ */
+public final class Job {
+  public enum State {
+    RUNNING,
+    DONE,
+    FAILED,
+    KILLED
+  }
+
+  public static final int OUTPUT_LIMIT = 1 << 20;
+  static final String OUTPUT_TRUNCATED = "\n… (job output truncated)\n";
+
+  public final int id;
+  public final String description;
+  // Guarded by itself.
+  private final StringBuilder buffer = new StringBuilder();
+  private boolean truncated;
+  private final CommandContext context;
+  private final long startNanos = System.nanoTime();
+  private volatile long endNanos;
+  private volatile State state = State.RUNNING;
+  private volatile boolean killed;
+  private final Thread thread;
+
+  Job(
+      int id,
+      String description,
+      CommandContext parent,
+      Command command,
+      java.util.function.Consumer<Job> onEnd) {
+    this.id = id;
+    this.description = description;
+    this.context = parent.fork(new PrintWriter(new Output(), true));
+    // Nobody is at the prompt to answer a background command's follow-up lines.
+    this.context.setAllowContinuation(false);
+    this.thread =
+        Threads.unstarted(
+            "xanadu-job-" + id,
+            () -> {
+              State end = State.DONE;
+              try {
+                CommandResult result = command.execute(context);
+                if ((result != null && result.isFailure()) || context.failed()) {
+                  end = State.FAILED;
+                }
+              } catch (Throwable e) {
+                context.recordException(e);
+                context.error("Command failed: " + e.getMessage());
+                end = State.FAILED;
+              } finally {
+                context.out.flush();
+                endNanos = System.nanoTime();
+                state = killed ? State.KILLED : end;
+                onEnd.accept(this);
+              }
+            });
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  public State state() {
+    return state;
+  }
+
+  public boolean running() {
+    return state == State.RUNNING;
+  }
+
+  public long elapsedMillis() {
+    long end = running() ? System.nanoTime() : endNanos;
+    return (end - startNanos) / 1_000_000L;
+  }
+
+  // Output printed so far, from the given char offset on.
+  public String output(int from) {
+    synchronized (buffer) {
+      return from >= buffer.length() ? "" : buffer.substring(Math.max(0, from));
+    }
+  }
+
+  // Raises the job's cancel flag, which long-running commands poll with consumeCancel, and
+  // interrupts its thread to end blocking waits.
+  public void kill() {
+    if (!running()) {
+      return;
+    }
+    killed = true;
+    context.cancelCurrentCommand();
+    thread.interrupt();
+  }
+
+  // Waits up to timeoutMillis for the job to end; 0 waits indefinitely. True once it has ended.
+  public boolean await(long timeoutMillis) throws InterruptedException {
+    thread.join(timeoutMillis);
+    return !running();
+  }
+
+  // Appends to the buffer until the limit, then drops the rest behind one marker.
+  private final class Output extends Writer {
+    @Override
+    public void write(char[] chars, int off, int len) {
+      synchronized (buffer) {
+        if (truncated) {
+          return;
+        }
+        int room = OUTPUT_LIMIT - buffer.length();
+        if (len <= room) {
+          buffer.append(chars, off, len);
+          return;
+        }
+        buffer.append(chars, off, room);
+        buffer.append(OUTPUT_TRUNCATED);
+        truncated = true;
+      }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
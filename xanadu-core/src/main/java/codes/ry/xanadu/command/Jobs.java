@@ -0,0 +1,72 @@
+package codes.ry.xanadu.command;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The background jobs of one console, shared by every context forked from it. A job leaves the
+ * table once fg, wait or kill has reported its end; until then an ended job is kept for them,
+ * though only the last {@value #MAX_ENDED}.
+ */
+public final class Jobs {
+  public static final int MAX_ENDED = 16;
+
+  private final Map<Integer, Job> jobs = new TreeMap<>();
+  private final List<Job> ended = new ArrayList<>();
+  private int nextId = 1;
+
+  public Job start(String description, Command command, CommandContext context) {
+    Job job;
+    synchronized (this) {
+      job = new Job(nextId++, description, context, command, this::ended);
+      jobs.put(job.id, job);
+    }
+    job.start();
+    return job;
+  }
+
+  public synchronized Job get(int id) {
+    return jobs.get(id);
+  }
+
+  public synchronized List<Job> list() {
+    return new ArrayList<>(jobs.values());
+  }
+
+  public synchronized void remove(Job job) {
+    jobs.remove(job.id);
+    ended.remove(job);
+  }
+
+  // Jobs that ended since the last call, for the console to announce once.
+  public synchronized List<Job> drainEnded() {
+    List<Job> drained = new ArrayList<>(ended);
+    ended.clear();
+    return drained;
+  }
+
+  private synchronized void ended(Job job) {
+    if (!jobs.containsKey(job.id)) {
+      return;
+    }
+    ended.add(job);
+    int endedCount = 0;
+    for (Job other : jobs.values()) {
+      if (!other.running()) {
+        endedCount++;
+      }
+    }
+    Iterator<Job> it = jobs.values().iterator();
+    while (endedCount > MAX_ENDED && it.hasNext()) {
+      Job oldest = it.next();
+      if (!oldest.running()) {
+        it.remove();
+        ended.remove(oldest);
+        endedCount--;
+      }
+    }
+  }
+}
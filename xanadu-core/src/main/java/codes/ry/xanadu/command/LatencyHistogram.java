@@ -0,0 +1,86 @@
+package codes.ry.xanadu.command;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative durations in nanoseconds. Buckets are log-spaced in the
+ * manner of HdrHistogram: every power of two is split into {@value #SUB_BUCKETS} linear
+ * sub-buckets, so a reported value is within an eighth of the recorded one at any magnitude.
+ * Recording is two atomic increments and a max update, with no allocation.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  // Values below 2 * SUB_BUCKETS get a bucket each; every higher power of two gets SUB_BUCKETS.
+  private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  public long count() {
+    return count.get();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  // The highest value of the bucket holding the given fraction of recordings, capped at max.
+  public long percentile(double fraction) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(Math.min(1.0, Math.max(0.0, fraction)) * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(highest(i), max());
+      }
+    }
+    return max();
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    max.set(0);
+  }
+
+  static int bucket(long value) {
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - (SUB_BITS + 1);
+    if (shift < 0) {
+      return (int) value;
+    }
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static long highest(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
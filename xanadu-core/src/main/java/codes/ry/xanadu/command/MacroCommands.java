@@ -2,16 +2,20 @@ package codes.ry.xanadu.command;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class MacroCommands implements CommandProvider {
-  private static final Pattern PARAM_PATTERN = Pattern.compile("\\$(\\d+|@)");
-  private final Map<String, Macro> macros = new HashMap<>();
+  // Lines of the definition in progress; local, as the continuation collecting them is.
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final ContextKey<List<String>> DEF_LINES =
+      (ContextKey) ContextKey.local("__macro.def.lines", List.class);
+
+  private final Map<String, Macro> macros = new ConcurrentHashMap<>();
 
   @Override
   public boolean supports(CommandInput input) {
@@ -43,14 +47,18 @@ public final class MacroCommands implements CommandProvider {
         return CommandResult.SUCCESS;
       };
     }
-    Macro macro = macros.get(input.name);
-    if (macro == null) {
-      return context -> {
-        context.error("Unknown macro: " + input.name);
-        return CommandResult.FAILURE;
-      };
-    }
-    return context -> executeMacro(context, macro, input);
+    return context -> executeMacro(context, input.name, input);
+  }
+
+  @Override
+  public boolean dynamicNames() {
+    return true;
+  }
+
+  // Each session defines its own macros.
+  @Override
+  public CommandProvider forSession() {
+    return new MacroCommands();
   }
 
   @Override
@@ -143,78 +151,20 @@ public final class MacroCommands implements CommandProvider {
     context.out.flush();
   }
 
-  private CommandResult executeMacro(CommandContext context, Macro macro, CommandInput input) {
+  private CommandResult executeMacro(CommandContext context, String name, CommandInput input) {
+    // Looked up per call, so a command resolved once keeps up with def and undef.
+    Macro macro = macros.get(name);
+    if (macro == null) {
+      context.error("Unknown macro: " + name);
+      return CommandResult.FAILURE;
+    }
     List<String> args = input.args;
-    int required = macro.requiredArgs;
+    int required = macro.plan.requiredArgs();
     if (required > args.size()) {
       context.error("Macro requires at least " + required + " arguments.");
       return CommandResult.FAILURE;
     }
-    String rawArgs = input.tail();
-    List<String> expanded = new ArrayList<>();
-    for (String line : macro.lines) {
-      expanded.add(expand(line, args, rawArgs));
-    }
-    return runLines(context, expanded);
-  }
-
-  private CommandResult runLines(CommandContext context, List<String> lines) {
-    Continuation prev = context.continuation();
-    context.clearContinuation();
-    Continuation continuation = null;
-    String continuationName = null;
-    try {
-      for (int i = 0; i < lines.size(); i++) {
-        String line = lines.get(i);
-        if (continuation == null) {
-          if (!executeLine(context, line)) {
-            return CommandResult.FAILURE;
-          }
-          continuation = context.continuation();
-          continuationName = continuation == null ? null : continuation.commandName;
-          context.clearContinuation();
-          continue;
-        }
-        ContinuationResult result = continuation.handler.onLine(line, context);
-        if (result == null) {
-          continue;
-        }
-        if (result.tail != null) {
-          String combined = continuationName + " " + result.tail;
-          if (!executeLine(context, combined)) {
-            return CommandResult.FAILURE;
-          }
-          continuation = context.continuation();
-          continuationName = continuation == null ? null : continuation.commandName;
-          context.clearContinuation();
-        }
-        if (!result.continueAfter) {
-          continuation = null;
-          continuationName = null;
-        }
-      }
-      if (continuation != null) {
-        context.error("Macro ended before continuation completed.");
-        return CommandResult.FAILURE;
-      }
-      return CommandResult.SUCCESS;
-    } finally {
-      context.continueWith(prev);
-    }
-  }
-
-  private boolean executeLine(CommandContext context, String line) {
-    CommandInput input = CommandParser.parse(line);
-    if (input == null) {
-      return true;
-    }
-    var command = context.commandService().find(input);
-    if (command.isEmpty()) {
-      context.error("Unknown command: " + input.name);
-      return false;
-    }
-    CommandResult result = command.get().execute(context);
-    return result == null || !result.isFailure();
+    return macro.plan.run(context, args, input.tail());
   }
 
   private String remainderAfterName(CommandInput input) {
@@ -230,94 +180,28 @@ public final class MacroCommands implements CommandProvider {
   }
 
   private void putMacro(CommandContext context, String name, List<String> lines) {
-    int required = requiredArgs(lines);
-    macros.put(name, new Macro(List.copyOf(lines), required));
-  }
-
-
-  private int requiredArgs(List<String> lines) {
-    int max = 0;
-    for (String line : lines) {
-      Matcher matcher = PARAM_PATTERN.matcher(line);
-      while (matcher.find()) {
-        String token = matcher.group(1);
-        if (token.equals("@")) {
-          continue;
-        }
-        try {
-          int index = Integer.parseInt(token);
-          max = Math.max(max, index);
-        } catch (NumberFormatException ignored) {
-          // Ignore.
-        }
-      }
-    }
-    return max;
+    macros.put(name, new Macro(ScriptPlan.macro(List.copyOf(lines))));
   }
 
-  private String expand(String line, List<String> args, String rawArgs) {
-    Matcher matcher = PARAM_PATTERN.matcher(line);
-    StringBuffer buffer = new StringBuffer();
-    while (matcher.find()) {
-      String token = matcher.group(1);
-      String replacement = "";
-      if (token.equals("@")) {
-        replacement = rawArgs == null ? "" : rawArgs;
-      } else {
-        int index = Integer.parseInt(token);
-        if (index >= 1 && index <= args.size()) {
-          replacement = args.get(index - 1);
-        }
-      }
-      matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
-    }
-    matcher.appendTail(buffer);
-    return buffer.toString();
-  }
 
   private void recordLine(CommandContext context, String line) {
-    List<String> lines = getRecordedLines(context);
-    lines.add(line);
+    context.computeIfAbsent(DEF_LINES, ArrayList::new).add(line);
   }
 
   private List<String> collectLines(CommandContext context) {
-    List<String> lines = getRecordedLines(context);
-    context.remove("__macro.def.lines");
+    List<String> lines = context.get(DEF_LINES);
+    context.remove(DEF_LINES);
     if (lines == null) {
       return List.of();
     }
     return new ArrayList<>(lines);
   }
 
-  private List<String> getRecordedLines(CommandContext context) {
-    Object value = context.get("__macro.def.lines");
-    if (value instanceof List) {
-      List<?> raw = (List<?>) value;
-      boolean allStrings = true;
-      for (Object entry : raw) {
-        if (!(entry instanceof String)) {
-          allStrings = false;
-          break;
-        }
-      }
-      if (allStrings) {
-        @SuppressWarnings("unchecked")
-        List<String> lines = (List<String>) raw;
-        return lines;
-      }
-    }
-    List<String> lines = new ArrayList<>();
-    context.put("__macro.def.lines", lines);
-    return lines;
-  }
-
   private static final class Macro {
-    private final List<String> lines;
-    private final int requiredArgs;
+    private final ScriptPlan plan;
 
-    private Macro(List<String> lines, int requiredArgs) {
-      this.lines = lines;
-      this.requiredArgs = requiredArgs;
+    private Macro(ScriptPlan plan) {
+      this.plan = plan;
     }
   }
 
@@ -11,4 +11,9 @@ public abstract class NamedCommandProvider implements CommandProvider {
   public boolean supports(CommandInput input) {
     return name.equals(input.name);
   }
+
+  @Override
+  public java.util.Set<String> commandNames() {
+    return java.util.Set.of(name);
+  }
 }
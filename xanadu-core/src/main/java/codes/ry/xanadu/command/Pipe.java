@@ -0,0 +1,125 @@
+package codes.ry.xanadu.command;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Bounded hand-off of records between two stages of a pipeline. The writer blocks while the pipe
+ * is full and the reader while it is empty, so a fast producer runs at most {@code capacity}
+ * records ahead of its consumer. Either side may stop early: {@link #finish} ends the stream for
+ * the reader, {@link #close} tells the writer nobody is reading any more.
+ */
+public final class Pipe implements Iterable<Object>, AutoCloseable {
+  public static final int DEFAULT_CAPACITY = 256;
+  private static final Object NULL = new Object();
+  private static final Object END = new Object();
+
+  private final ArrayDeque<Object> records = new ArrayDeque<>();
+  private final int capacity;
+  private boolean finished;
+  private boolean closed;
+  private boolean iterated;
+
+  public Pipe() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public Pipe(int capacity) {
+    this.capacity = Math.max(1, capacity);
+  }
+
+  // Blocks while the pipe is full; false once the reader has closed it.
+  public synchronized boolean put(Object record) {
+    try {
+      while (records.size() >= capacity && !closed) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    if (closed || finished) {
+      return false;
+    }
+    // ArrayDeque holds no nulls; NULL stands in for them.
+    records.addLast(record == null ? NULL : record);
+    notifyAll();
+    return true;
+  }
+
+  // The writer is done; the reader sees the end of the stream once the pipe drains.
+  public synchronized void finish() {
+    finished = true;
+    notifyAll();
+  }
+
+  // The reader is done; pending and future records are dropped.
+  @Override
+  public synchronized void close() {
+    closed = true;
+    records.clear();
+    notifyAll();
+  }
+
+  public synchronized boolean closed() {
+    return closed;
+  }
+
+  // The records in arrival order. A pipe is read once, so only one iterator may be taken.
+  @Override
+  public synchronized Iterator<Object> iterator() {
+    if (iterated) {
+      throw new IllegalStateException("Pipe is already being read");
+    }
+    iterated = true;
+    return new Iterator<>() {
+      private Object next;
+      private boolean ready;
+
+      @Override
+      public boolean hasNext() {
+        if (!ready) {
+          next = take();
+          ready = true;
+        }
+        return next != END;
+      }
+
+      @Override
+      public Object next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        ready = false;
+        return next == NULL ? null : next;
+      }
+    };
+  }
+
+  public Stream<Object> stream() {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+  }
+
+  private synchronized Object take() {
+    try {
+      while (records.isEmpty() && !finished && !closed) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return END;
+    }
+    if (records.isEmpty()) {
+      return END;
+    }
+    Object record = records.removeFirst();
+    notifyAll();
+    return record;
+  }
+}
@@ -0,0 +1,112 @@
+package codes.ry.xanadu.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the stages of {@code cmd1 | cmd2 | ...} concurrently. Every stage but the last runs on its
+ * own thread in a fork of the context and sends records downstream through a {@link Pipe}; the
+ * last stage runs on the caller's thread and context, reading the records from
+ * {@link CommandContext#upstream}. When a stage returns, the pipe it reads from is closed, so
+ * the stages feeding it stop at their next emit; when the last one returns, every pipe is.
+ */
+final class Pipeline implements Command {
+  private final List<Command> stages;
+  private final List<String> names;
+
+  Pipeline(List<Command> stages, List<String> names) {
+    this.stages = List.copyOf(stages);
+    this.names = List.copyOf(names);
+  }
+
+  @Override
+  public CommandResult execute(CommandContext context) {
+    int last = stages.size() - 1;
+    List<Thread> threads = new ArrayList<>(last);
+    List<Pipe> pipes = new ArrayList<>(last);
+    CommandContext[] forks = new CommandContext[last];
+    Throwable[] errors = new Throwable[last];
+    Pipe upstream = null;
+    for (int i = 0; i < last; i++) {
+      Pipe in = upstream;
+      Pipe out = new Pipe();
+      pipes.add(out);
+      CommandContext fork = context.fork(context.out);
+      // An upstream stage cannot prompt for more lines; it runs with what it was given.
+      fork.setAllowContinuation(false);
+      fork.setPipes(in, out);
+      // A cancel of the caller's command, such as Ctrl-C, reaches every stage and its hook.
+      context.forwardCancel(fork);
+      forks[i] = fork;
+      Command stage = stages.get(i);
+      int index = i;
+      threads.add(
+          Threads.start(
+              "xanadu-pipe-" + names.get(i),
+              () -> {
+                try {
+                  CommandResult result = stage.execute(fork);
+                  if (result != null && result.isFailure()) {
+                    fork.fail();
+                  }
+                } catch (Throwable e) {
+                  errors[index] = e;
+                } finally {
+                  out.finish();
+                  if (in != null) {
+                    in.close();
+                  }
+                }
+              }));
+      upstream = out;
+    }
+    CommandResult result;
+    context.setPipes(upstream, null);
+    try {
+      result = stages.get(last).execute(context);
+    } finally {
+      context.setPipes(null, null);
+      // The result is complete; stages still running have nobody left to feed.
+      for (Pipe pipe : pipes) {
+        pipe.close();
+      }
+      join(threads);
+      for (CommandContext fork : forks) {
+        context.stopForwardingCancel(fork);
+      }
+    }
+    for (int i = 0; i < last; i++) {
+      if (errors[i] instanceof RuntimeException) {
+        throw (RuntimeException) errors[i];
+      }
+      if (errors[i] instanceof Error) {
+        throw (Error) errors[i];
+      }
+      if (errors[i] != null) {
+        throw new RuntimeException(errors[i].getMessage(), errors[i]);
+      }
+      if (forks[i].failed()) {
+        context.fail();
+        result = CommandResult.FAILURE;
+      }
+    }
+    return result;
+  }
+
+  private static void join(List<Thread> threads) {
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,116 +1,222 @@
 package codes.ry.xanadu.command;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class ReflectiveCommandProvider implements CommandProvider {
+  private static final Overload[] NO_OVERLOADS = new Overload[0];
+  private static final ClassValue<DispatchTable> TABLES =
+      new ClassValue<>() {
+        @Override
+        protected DispatchTable computeValue(Class<?> type) {
+          return new DispatchTable(type);
+        }
+      };
 
   @Override
   public final boolean supports(CommandInput input) {
-    return findMethod(input) != null;
+    return resolve(input) != null;
   }
 
   @Override
   public final Command commandFor(CommandInput input) {
-    Method match = findMethod(input);
+    Match match = resolve(input);
     if (match == null) {
       throw new IllegalArgumentException("No matching command: " + input.name);
     }
-    Object[] parsed = parseArgs(match.getParameterTypes(), input.args);
-    return context -> invoke(match, context, parsed);
+    return context -> match.overload.invoke(this, context, match.args);
   }
 
   @Override
   public java.util.Set<String> commandNames() {
-    java.util.Set<String> names = new java.util.TreeSet<>();
-    Method[] methods = getClass().getDeclaredMethods();
-    for (Method method : methods) {
-      if (!Modifier.isPublic(method.getModifiers())) {
-        continue;
-      }
-      if (method.isSynthetic()) {
-        continue;
-      }
-      names.add(method.getName());
-    }
-    return names;
+    return TABLES.get(getClass()).names;
   }
 
   @Override
   public java.util.List<String> usage(String commandName) {
-    java.util.List<String> lines = new java.util.ArrayList<>();
-    Method[] methods = getClass().getDeclaredMethods();
-    for (Method method : methods) {
-      if (!Modifier.isPublic(method.getModifiers())) {
-        continue;
-      }
-      if (method.isSynthetic()) {
-        continue;
-      }
-      if (!method.getName().equals(commandName)) {
-        continue;
+    return TABLES.get(getClass()).usages.getOrDefault(commandName, List.of());
+  }
+
+  // The first overload whose arguments all parse, or null; each argument is parsed once.
+  private Match resolve(CommandInput input) {
+    Overload[] overloads = TABLES.get(getClass()).overloads(input.name, input.args.size());
+    for (Overload overload : overloads) {
+      Object[] args = overload.parse(input.args);
+      if (args != null) {
+        return new Match(overload, args);
       }
-      lines.add(signature(method));
     }
-    return lines;
+    return null;
   }
 
-  private Method findMethod(CommandInput input) {
-    Method[] methods = getClass().getDeclaredMethods();
-    for (Method method : methods) {
-      if (!Modifier.isPublic(method.getModifiers())) {
-        continue;
+  private static final class Match {
+    private final Overload overload;
+    private final Object[] args;
+
+    private Match(Overload overload, Object[] args) {
+      this.overload = overload;
+      this.args = args;
+    }
+  }
+
+  /**
+   * Public methods of one provider class, grouped by name and then by argument count, each with an
+   * invoker and the parsers for its arguments. Within a group, overloads taking fewer strings come
+   * first, so a typed overload is tried before one that takes any text; ties keep declared order.
+   * Built once per class.
+   */
+  private static final class DispatchTable {
+    private final Map<String, Overload[][]> byName = new HashMap<>();
+    private final java.util.Set<String> names;
+    private final Map<String, List<String>> usages;
+
+    private DispatchTable(Class<?> type) {
+      Map<String, List<Overload>> found = new java.util.LinkedHashMap<>();
+      java.util.TreeSet<String> sorted = new java.util.TreeSet<>();
+      Map<String, List<String>> lines = new HashMap<>();
+      for (Method method : type.getDeclaredMethods()) {
+        if (!Modifier.isPublic(method.getModifiers()) || method.isSynthetic()) {
+          continue;
+        }
+        sorted.add(method.getName());
+        lines.computeIfAbsent(method.getName(), k -> new ArrayList<>()).add(signature(method));
+        Overload overload = Overload.of(method);
+        if (overload != null) {
+          found.computeIfAbsent(method.getName(), k -> new ArrayList<>()).add(overload);
+        }
       }
-      if (!method.getName().equals(input.name)) {
-        continue;
+      for (Map.Entry<String, List<Overload>> entry : found.entrySet()) {
+        int maxArity = 0;
+        for (Overload overload : entry.getValue()) {
+          maxArity = Math.max(maxArity, overload.parsers.length);
+        }
+        Overload[][] byArity = new Overload[maxArity + 1][];
+        for (int arity = 0; arity <= maxArity; arity++) {
+          List<Overload> matching = new ArrayList<>();
+          for (Overload overload : entry.getValue()) {
+            if (overload.parsers.length == arity) {
+              matching.add(overload);
+            }
+          }
+          matching.sort(java.util.Comparator.comparingInt(overload -> overload.strings));
+          byArity[arity] = matching.toArray(NO_OVERLOADS);
+        }
+        byName.put(entry.getKey(), byArity);
       }
-      if (!isApplicable(method, input.args)) {
-        continue;
+      this.names = java.util.Collections.unmodifiableSortedSet(sorted);
+      Map<String, List<String>> usages = new HashMap<>();
+      lines.forEach((name, list) -> usages.put(name, List.copyOf(list)));
+      this.usages = usages;
+    }
+
+    private Overload[] overloads(String name, int arity) {
+      Overload[][] byArity = byName.get(name);
+      if (byArity == null || arity >= byArity.length) {
+        return NO_OVERLOADS;
       }
-      return method;
+      return byArity[arity];
     }
-    return null;
   }
 
-  private boolean isApplicable(Method method, List<String> args) {
-    Class<?>[] types = method.getParameterTypes();
-    int argOffset = 0;
-    if (types.length > 0 && types[0] == CommandContext.class) {
-      argOffset = 1;
-    }
-    if (types.length - argOffset != args.size()) {
-      return false;
+  private static final class Overload {
+    private final String name;
+    // (Object receiver, Object[] args) -> Object, args including the context slot if any.
+    private final MethodHandle invoker;
+    private final boolean takesContext;
+    private final ArgParser[] parsers;
+    // String parameters, which accept any argument.
+    private final int strings;
+
+    private Overload(
+        String name,
+        MethodHandle invoker,
+        boolean takesContext,
+        ArgParser[] parsers,
+        int strings) {
+      this.name = name;
+      this.invoker = invoker;
+      this.takesContext = takesContext;
+      this.parsers = parsers;
+      this.strings = strings;
     }
-    for (int i = argOffset; i < types.length; i++) {
-      if (parseArg(types[i], args.get(i - argOffset)) == null) {
-        return false;
+
+    // Null when the method has a parameter no command argument can fill.
+    private static Overload of(Method method) {
+      Class<?>[] types = method.getParameterTypes();
+      boolean takesContext = types.length > 0 && types[0] == CommandContext.class;
+      int offset = takesContext ? 1 : 0;
+      ArgParser[] parsers = new ArgParser[types.length - offset];
+      int strings = 0;
+      for (int i = offset; i < types.length; i++) {
+        if (types[i] == String.class) {
+          strings++;
+        }
+        parsers[i - offset] = parserFor(types[i]);
+        if (parsers[i - offset] == null) {
+          return null;
+        }
       }
+      MethodHandle handle = unreflect(method);
+      if (Modifier.isStatic(method.getModifiers())) {
+        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+      }
+      MethodHandle invoker =
+          handle
+              .asType(MethodType.genericMethodType(types.length + 1))
+              .asSpreader(Object[].class, types.length);
+      return new Overload(method.getName(), invoker, takesContext, parsers, strings);
     }
-    return true;
-  }
 
-  private Object[] parseArgs(Class<?>[] types, List<String> args) {
-    List<Object> parsed = new ArrayList<>();
-    int argOffset = 0;
-    if (types.length > 0 && types[0] == CommandContext.class) {
-      parsed.add(null);
-      argOffset = 1;
+    private static MethodHandle unreflect(Method method) {
+      try {
+        return MethodHandles.publicLookup().unreflect(method);
+      } catch (IllegalAccessException e) {
+        // Public methods of a non-public class.
+        try {
+          method.setAccessible(true);
+          return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | RuntimeException inner) {
+          throw new IllegalStateException(
+              "Command method is not accessible: " + method.getName(), inner);
+        }
+      }
     }
-    for (int i = argOffset; i < types.length; i++) {
-      parsed.add(parseArg(types[i], args.get(i - argOffset)));
+
+    // One slot per method parameter, the context slot left empty; null if an argument does not
+    // parse.
+    private Object[] parse(List<String> args) {
+      int offset = takesContext ? 1 : 0;
+      Object[] parsed = new Object[offset + parsers.length];
+      for (int i = 0; i < parsers.length; i++) {
+        Object value = parsers[i].parse(args.get(i));
+        if (value == null) {
+          return null;
+        }
+        parsed[offset + i] = value;
+      }
+      return parsed;
     }
-    return parsed.toArray();
-  }
 
-  private CommandResult invoke(Method method, CommandContext context, Object[] args) {
-    try {
-      if (args.length > 0 && args[0] == null && method.getParameterTypes()[0] == CommandContext.class) {
+    private CommandResult invoke(Object receiver, CommandContext context, Object[] parsed) {
+      Object[] args = parsed;
+      if (takesContext) {
+        // A command may run more than once, possibly concurrently.
+        args = parsed.clone();
         args[0] = context;
       }
-      Object result = method.invoke(this, args);
+      Object result;
+      try {
+        result = invoker.invokeExact(receiver, args);
+      } catch (Throwable e) {
+        throw new RuntimeException("Command failed: " + name, e);
+      }
       if (result instanceof CommandResult) {
         return (CommandResult) result;
       }
@@ -118,77 +224,86 @@ public abstract class ReflectiveCommandProvider implements CommandProvider {
         return ((Boolean) result) ? CommandResult.SUCCESS : CommandResult.FAILURE;
       }
       return CommandResult.SUCCESS;
-    } catch (IllegalAccessException e) {
-      throw new IllegalStateException("Command method is not accessible: " + method.getName(), e);
-    } catch (InvocationTargetException e) {
-      Throwable cause = e.getCause() == null ? e : e.getCause();
-      throw new RuntimeException("Command failed: " + method.getName(), cause);
     }
   }
 
-  private Object parseArg(Class<?> type, String raw) {
+  private interface ArgParser {
+    // Null when raw is not a valid value.
+    Object parse(String raw);
+  }
+
+  private static ArgParser parserFor(Class<?> type) {
     if (type == String.class) {
-      return raw;
+      return raw -> raw;
     }
     if (type == int.class || type == Integer.class) {
-      try {
-        return Integer.parseInt(raw);
-      } catch (NumberFormatException e) {
-        return null;
-      }
+      return raw -> {
+        try {
+          return Integer.parseInt(raw);
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      };
     }
     if (type == long.class || type == Long.class) {
-      try {
-        return Long.parseLong(raw);
-      } catch (NumberFormatException e) {
-        return null;
-      }
+      return raw -> {
+        try {
+          return Long.parseLong(raw);
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      };
     }
     if (type == float.class || type == Float.class) {
-      try {
-        return Float.parseFloat(raw);
-      } catch (NumberFormatException e) {
-        return null;
-      }
+      return raw -> {
+        try {
+          return Float.parseFloat(raw);
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      };
     }
     if (type == double.class || type == Double.class) {
-      try {
-        return Double.parseDouble(raw);
-      } catch (NumberFormatException e) {
-        return null;
-      }
+      return raw -> {
+        try {
+          return Double.parseDouble(raw);
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      };
     }
     if (type == boolean.class || type == Boolean.class) {
-      if ("true".equalsIgnoreCase(raw)) {
-        return true;
-      }
-      if ("false".equalsIgnoreCase(raw)) {
-        return false;
-      }
-      return null;
+      return raw -> {
+        if ("true".equalsIgnoreCase(raw)) {
+          return true;
+        }
+        if ("false".equalsIgnoreCase(raw)) {
+          return false;
+        }
+        return null;
+      };
     }
     return null;
   }
 
-  private String signature(Method method) {
+  private static String signature(Method method) {
     StringBuilder sb = new StringBuilder();
     sb.append(method.getName());
     var params = method.getParameters();
     int index = 0;
-    boolean first = true;
     for (var param : params) {
       if (param.getType() == CommandContext.class) {
         continue;
       }
       sb.append(' ');
       sb.append(paramName(param, index, params));
-      first = false;
       index++;
     }
     return sb.toString();
   }
 
-  private String paramName(java.lang.reflect.Parameter param, int index, java.lang.reflect.Parameter[] params) {
+  private static String paramName(
+      java.lang.reflect.Parameter param, int index, java.lang.reflect.Parameter[] params) {
     if (param.isNamePresent()) {
       return param.getName();
     }
@@ -205,7 +320,7 @@ public abstract class ReflectiveCommandProvider implements CommandProvider {
     return base + (index + 1);
   }
 
-  private String typeLabel(Class<?> type) {
+  private static String typeLabel(Class<?> type) {
     if (type == String.class) {
       return "string";
     }
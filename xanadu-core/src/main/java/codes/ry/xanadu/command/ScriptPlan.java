@@ -0,0 +1,255 @@
+package codes.ry.xanadu.command;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A script or macro compiled for repeated runs. Each line is parsed once, and the command it
+ * resolves to is kept for as long as the command service would still resolve it the same way.
+ * Macro lines holding {@code $1}..{@code $n} or {@code $@} are split into literal text and
+ * parameter slots up front; binding a call's arguments fills the slots, and the last binding of
+ * each line is remembered so a macro called with the same arguments is not parsed again.
+ *
+ * <p>Scripts, macros and the REPL share {@link #executeLine} and the continuation handling here.
+ */
+public final class ScriptPlan {
+  private static final Pattern PARAM_PATTERN = Pattern.compile("\\$(\\d+|@)");
+  // Slot for $@, the call's arguments as typed.
+  private static final int ALL_ARGS = 0;
+
+  private final String label;
+  private final Step[] steps;
+  private final int requiredArgs;
+
+  private ScriptPlan(String label, Step[] steps, int requiredArgs) {
+    this.label = label;
+    this.steps = steps;
+    this.requiredArgs = requiredArgs;
+  }
+
+  public static ScriptPlan script(List<String> lines) {
+    Step[] steps = new Step[lines.size()];
+    for (int i = 0; i < steps.length; i++) {
+      steps[i] = new Step(lines.get(i), null);
+    }
+    return new ScriptPlan("Script", steps, 0);
+  }
+
+  public static ScriptPlan macro(List<String> lines) {
+    Step[] steps = new Step[lines.size()];
+    int required = 0;
+    for (int i = 0; i < steps.length; i++) {
+      Object[] segments = segments(lines.get(i));
+      for (Object segment : segments == null ? new Object[0] : segments) {
+        if (segment instanceof Integer) {
+          required = Math.max(required, (Integer) segment);
+        }
+      }
+      steps[i] = new Step(lines.get(i), segments);
+    }
+    return new ScriptPlan("Macro", steps, required);
+  }
+
+  public int requiredArgs() {
+    return requiredArgs;
+  }
+
+  public CommandResult run(CommandContext context) {
+    return run(context, List.of(), "");
+  }
+
+  public CommandResult run(CommandContext context, List<String> args, String rawArgs) {
+    return execute(context, java.util.Arrays.asList(steps).iterator(), args, rawArgs, label);
+  }
+
+  // Runs lines as they are read, without keeping them; for scripts too large to hold.
+  static CommandResult stream(CommandContext context, Iterator<String> lines) {
+    Iterator<Step> steps =
+        new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return lines.hasNext();
+          }
+
+          @Override
+          public Step next() {
+            return new Step(lines.next(), null);
+          }
+        };
+    return execute(context, steps, List.of(), "", "Script");
+  }
+
+  // Parses, resolves and runs one line. Blank lines succeed; unknown commands are reported.
+  public static CommandResult executeLine(CommandContext context, String line) {
+    CommandInput input = CommandParser.parse(line);
+    if (input == null) {
+      return CommandResult.SUCCESS;
+    }
+    var command = context.commandService().find(input);
+    if (command.isEmpty()) {
+      context.error("Unknown command: " + input.name);
+      return CommandResult.FAILURE;
+    }
+    return command.get().execute(context);
+  }
+
+  private static CommandResult execute(
+      CommandContext context,
+      Iterator<Step> steps,
+      List<String> args,
+      String rawArgs,
+      String label) {
+    Continuation previous = context.continuation();
+    context.clearContinuation();
+    Continuation continuation = null;
+    String continuationName = null;
+    try {
+      while (steps.hasNext()) {
+        Step step = steps.next();
+        if (continuation == null) {
+          if (failed(step.execute(context, args, rawArgs))) {
+            return CommandResult.FAILURE;
+          }
+          continuation = context.continuation();
+          continuationName = continuation == null ? null : continuation.commandName;
+          context.clearContinuation();
+          continue;
+        }
+        ContinuationResult result =
+            continuation.handler.onLine(step.bind(args, rawArgs).text, context);
+        if (result == null) {
+          continue;
+        }
+        if (result.tail != null) {
+          if (failed(executeLine(context, continuationName + " " + result.tail))) {
+            return CommandResult.FAILURE;
+          }
+          continuation = context.continuation();
+          continuationName = continuation == null ? null : continuation.commandName;
+          context.clearContinuation();
+        }
+        if (!result.continueAfter) {
+          continuation = null;
+          continuationName = null;
+        }
+      }
+      if (continuation != null) {
+        context.error(label + " ended before continuation completed.");
+        return CommandResult.FAILURE;
+      }
+      return CommandResult.SUCCESS;
+    } finally {
+      context.continueWith(previous);
+    }
+  }
+
+  private static boolean failed(CommandResult result) {
+    return result != null && result.isFailure();
+  }
+
+  // Literal strings and Integer slots, or null when the line has no parameters.
+  private static Object[] segments(String line) {
+    Matcher matcher = PARAM_PATTERN.matcher(line);
+    List<Object> segments = new ArrayList<>();
+    int last = 0;
+    while (matcher.find()) {
+      segments.add(line.substring(last, matcher.start()));
+      String token = matcher.group(1);
+      int slot;
+      if (token.equals("@")) {
+        slot = ALL_ARGS;
+      } else {
+        try {
+          slot = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+          // Too large to name an argument; expands to nothing like any missing one.
+          slot = -1;
+        }
+      }
+      segments.add(slot);
+      last = matcher.end();
+    }
+    if (segments.isEmpty()) {
+      return null;
+    }
+    segments.add(line.substring(last));
+    return segments.toArray();
+  }
+
+  private static final class Step {
+    private final String template;
+    private final Object[] segments;
+    private volatile Bound bound;
+
+    private Step(String template, Object[] segments) {
+      this.template = template;
+      this.segments = segments;
+      if (segments == null) {
+        bound = new Bound(template);
+      }
+    }
+
+    private CommandResult execute(CommandContext context, List<String> args, String rawArgs) {
+      Bound current = bind(args, rawArgs);
+      if (current.input == null) {
+        return CommandResult.SUCCESS;
+      }
+      CommandService service = context.commandService();
+      CommandService.Resolution resolution = current.resolution;
+      if (resolution == null || !service.valid(resolution, current.input)) {
+        resolution = service.resolve(current.input);
+        if (resolution == null) {
+          context.error("Unknown command: " + current.input.name);
+          return CommandResult.FAILURE;
+        }
+        current.resolution = resolution;
+      }
+      return resolution.command.execute(context);
+    }
+
+    private Bound bind(List<String> args, String rawArgs) {
+      Bound current = bound;
+      if (segments == null) {
+        return current;
+      }
+      String text = expand(args, rawArgs);
+      if (current == null || !current.text.equals(text)) {
+        current = new Bound(text);
+        bound = current;
+      }
+      return current;
+    }
+
+    private String expand(List<String> args, String rawArgs) {
+      StringBuilder sb = new StringBuilder(template.length());
+      for (Object segment : segments) {
+        if (segment instanceof String) {
+          sb.append((String) segment);
+          continue;
+        }
+        int slot = (Integer) segment;
+        if (slot == ALL_ARGS) {
+          sb.append(rawArgs == null ? "" : rawArgs);
+        } else if (slot >= 1 && slot <= args.size()) {
+          sb.append(args.get(slot - 1));
+        }
+      }
+      return sb.toString();
+    }
+  }
+
+  // One line's text after binding, parsed, with the command it last resolved to.
+  private static final class Bound {
+    private final String text;
+    private final CommandInput input;
+    private volatile CommandService.Resolution resolution;
+
+    private Bound(String text) {
+      this.text = text;
+      this.input = CommandParser.parse(text);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package codes.ry.xanadu.command;
+
+import java.lang.reflect.Method;
+
+/**
+ * Starts the background threads commands run on: virtual threads where the runtime has them,
+ * daemon platform threads otherwise. The build targets Java 17, so virtual threads are looked up
+ * reflectively.
+ */
+public final class Threads {
+  private static final Object VIRTUAL_BUILDER = virtualBuilder();
+  private static final Method UNSTARTED = unstartedMethod();
+
+  private Threads() {}
+
+  public static Thread start(String name, Runnable task) {
+    Thread thread = unstarted(name, task);
+    thread.start();
+    return thread;
+  }
+
+  public static Thread unstarted(String name, Runnable task) {
+    Thread thread = null;
+    if (UNSTARTED != null) {
+      try {
+        thread = (Thread) UNSTARTED.invoke(VIRTUAL_BUILDER, task);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        thread = null;
+      }
+    }
+    if (thread == null) {
+      thread = new Thread(task);
+      thread.setDaemon(true);
+    }
+    thread.setName(name);
+    return thread;
+  }
+
+  public static boolean virtual() {
+    return UNSTARTED != null;
+  }
+
+  private static Object virtualBuilder() {
+    try {
+      return Thread.class.getMethod("ofVirtual").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static Method unstartedMethod() {
+    if (VIRTUAL_BUILDER == null) {
+      return null;
+    }
+    try {
+      return Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
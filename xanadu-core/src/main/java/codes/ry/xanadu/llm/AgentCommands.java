@@ -1,5 +1,6 @@
 package codes.ry.xanadu.llm;
 
+import codes.ry.xanadu.Rect;
 import codes.ry.xanadu.StyledImage;
 import codes.ry.xanadu.StyledImages;
 import codes.ry.xanadu.TextStyle;
@@ -7,6 +8,7 @@ import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
 import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandResult;
+import codes.ry.xanadu.command.ContextKey;
 import codes.ry.xanadu.command.Continuation;
 import codes.ry.xanadu.command.ContinuationResult;
 import codes.ry.xanadu.command.LogLevel;
@@ -20,8 +22,8 @@ import java.util.regex.Pattern;
 public final class AgentCommands implements CommandProvider {
   private static final String COMMAND = "agent";
   private static final String CHAT_COMMAND = "chat";
-  private static final String MODEL_KEY = "agent.model";
-  private static final String BACKEND_KEY = "agent.backend";
+  private static final ContextKey<String> MODEL = ContextKey.of("agent.model", String.class);
+  private static final ContextKey<String> BACKEND = ContextKey.of("agent.backend", String.class);
   private static final String HISTORY_PREFIX = "agent.history.";
   private static final String DEFAULT_BACKEND = "chatgpt";
   private static final String DEFAULT_MODEL = "gpt-5.2-chat-latest";
@@ -166,8 +168,8 @@ public final class AgentCommands implements CommandProvider {
     if (backendId == null) {
       backendId = DEFAULT_BACKEND;
     }
-    context.put(BACKEND_KEY, backendId);
-    context.put(MODEL_KEY, model);
+    context.put(BACKEND, backendId);
+    context.put(MODEL, model);
     context.out.println("Model set to " + backendId + ":" + model);
     context.out.flush();
   }
@@ -225,7 +227,7 @@ public final class AgentCommands implements CommandProvider {
         return;
       }
       context.debug("Sending request to " + backend.displayName() + ".");
-      AgentResponse response = backend.chat(messages, model);
+      AgentResponse response = send(backend, messages, model);
       if (response == null || response.text() == null || response.text().isBlank()) {
         context.error("No response from " + backend.displayName() + ".");
         return;
@@ -283,6 +285,34 @@ public final class AgentCommands implements CommandProvider {
     }
   }
 
+  // One request to the backend, recorded as an AgentRequest event.
+  private static AgentResponse send(
+      AgentBackend backend, List<AgentMessage> messages, String model) {
+    AgentRequest event = new AgentRequest();
+    event.begin();
+    AgentResponse response = null;
+    try {
+      response = backend.chat(messages, model);
+      return response;
+    } finally {
+      if (event.shouldCommit()) {
+        long promptChars = 0;
+        for (AgentMessage message : messages) {
+          promptChars += message.content() == null ? 0 : message.content().length();
+        }
+        event.backend = backend.id();
+        event.model = model;
+        event.promptChars = promptChars;
+        if (response != null) {
+          event.responseChars = response.text() == null ? 0 : response.text().length();
+          event.finishReason =
+              response.finishReason() == null ? null : response.finishReason().name();
+        }
+        event.commit();
+      }
+    }
+  }
+
   private void delegate(CommandContext context, CommandInput input) {
     if (input.args.size() < 2) {
       context.out.println("Usage: agent delegate <prompt>");
@@ -321,17 +351,14 @@ public final class AgentCommands implements CommandProvider {
     context.out.flush();
   }
 
-  @SuppressWarnings("unchecked")
   private List<AgentMessage> history(CommandContext context, AgentBackend backend) {
-    String key = historyKey(backend.id());
-    Object existing = context.get(key);
-    if (existing instanceof List) {
-      return (List<AgentMessage>) existing;
-    }
-    List<AgentMessage> messages = new ArrayList<>();
-    messages.add(new AgentMessage("system", toolInstructions(context, false)));
-    context.put(key, messages);
-    return messages;
+    return context.computeIfAbsent(
+        historyKey(backend.id()),
+        () -> {
+          List<AgentMessage> messages = new ArrayList<>();
+          messages.add(new AgentMessage("system", toolInstructions(context, false)));
+          return messages;
+        });
   }
 
   private List<AgentMessage> freshHistory(
@@ -447,7 +474,7 @@ public final class AgentCommands implements CommandProvider {
   }
 
   private String currentBackendId(CommandContext context) {
-    String backendId = context.get(BACKEND_KEY, String.class);
+    String backendId = context.get(BACKEND);
     if (backendId != null && !backendId.isBlank()) {
       return backendId;
     }
@@ -455,7 +482,7 @@ public final class AgentCommands implements CommandProvider {
   }
 
   private String currentModel(CommandContext context) {
-    String model = context.get(MODEL_KEY, String.class);
+    String model = context.get(MODEL);
     if (model != null && !model.isBlank()) {
       return model;
     }
@@ -466,8 +493,10 @@ public final class AgentCommands implements CommandProvider {
     return currentBackendId(context) + ":" + currentModel(context);
   }
 
-  private String historyKey(String backendId) {
-    return HISTORY_PREFIX + backendId.toLowerCase(Locale.ROOT);
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private ContextKey<List<AgentMessage>> historyKey(String backendId) {
+    String name = HISTORY_PREFIX + backendId.toLowerCase(Locale.ROOT);
+    return (ContextKey) ContextKey.of(name, List.class);
   }
 
   private String extractBackend(String raw) {
@@ -702,6 +731,7 @@ public final class AgentCommands implements CommandProvider {
     private final List<boolean[]> boldFlags;
     private final int height;
     private final int width;
+    private final Rect bounds;
 
     private FormattedText(String text, int maxWidth) {
       List<LineBuffer> rawLines = parseLines(text);
@@ -717,6 +747,12 @@ public final class AgentCommands implements CommandProvider {
       }
       this.height = lines.size();
       this.width = Math.max(0, Math.min(maxWidth, max));
+      this.bounds = new Rect(0, 0, height, max);
+    }
+
+    @Override
+    public Rect bounds() {
+      return bounds;
     }
 
     @Override
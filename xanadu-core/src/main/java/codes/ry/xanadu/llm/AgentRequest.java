@@ -0,0 +1,29 @@
+package codes.ry.xanadu.llm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for one request to an agent backend, timed until its response. */
+@Name("codes.ry.xanadu.AgentRequest")
+@Label("Agent Request")
+@Category({"Xanadu", "Agent"})
+@Description("A chat request to an LLM backend")
+final class AgentRequest extends jdk.jfr.Event {
+  @Label("Backend")
+  String backend;
+
+  @Label("Model")
+  String model;
+
+  // Characters across every message sent, history included.
+  @Label("Prompt Chars")
+  long promptChars;
+
+  @Label("Response Chars")
+  long responseChars;
+
+  @Label("Finish Reason")
+  String finishReason;
+}
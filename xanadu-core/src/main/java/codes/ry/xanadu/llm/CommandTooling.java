@@ -13,7 +13,6 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.List;
 
 public final class CommandTooling {
@@ -22,13 +21,7 @@ public final class CommandTooling {
   private CommandTooling() {}
 
   public static String toolDescription(CommandService service) {
-    Set<String> names = new TreeSet<>();
-    for (var provider : service.providers()) {
-      names.addAll(provider.commandNames());
-    }
-    for (var provider : service.enabledProviders()) {
-      names.addAll(provider.commandNames());
-    }
+    Set<String> names = service.commandNames();
     if (names.isEmpty()) {
       return "Execute a xanadu command line.";
     }
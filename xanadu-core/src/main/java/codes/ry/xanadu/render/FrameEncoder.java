@@ -0,0 +1,149 @@
+package codes.ry.xanadu.render;
+
+import codes.ry.xanadu.TextStyle;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes rendered frames straight to UTF-8 in one reusable byte array and hands each finished
+ * frame to a channel in a single write. Box-drawing and block glyphs and the ANSI style
+ * sequences are encoded once up front.
+ */
+public final class FrameEncoder {
+  private static final byte[] ANSI_BOLD = "\u001b[1m".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ANSI_RESET = "\u001b[0m".getBytes(StandardCharsets.US_ASCII);
+  // UTF-8 bytes of U+2500-U+259F, three per glyph.
+  private static final char GLYPH_START = '─';
+  private static final int GLYPH_COUNT = 0xa0;
+  private static final byte[] GLYPHS = new byte[GLYPH_COUNT * 3];
+
+  static {
+    for (int k = 0; k < GLYPH_COUNT; k++) {
+      byte[] encoded = String.valueOf((char) (GLYPH_START + k)).getBytes(StandardCharsets.UTF_8);
+      System.arraycopy(encoded, 0, GLYPHS, k * 3, 3);
+    }
+  }
+
+  private final WritableByteChannel channel;
+  private byte[] bytes = new byte[1 << 14];
+  private int length;
+
+  public FrameEncoder(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  public static FrameEncoder stdout() {
+    return new FrameEncoder(new FileOutputStream(FileDescriptor.out).getChannel());
+  }
+
+  // Writes a frame encoded earlier, such as one kept by a RenderCache, in one call.
+  public synchronized void write(byte[] frame) {
+    write(ByteBuffer.wrap(frame));
+  }
+
+  void begin() {
+    length = 0;
+    put((byte) '\n');
+  }
+
+  void row(char[] chars, TextStyle[] styles, int off, int width) {
+    // Four bytes per cell covers any char; each style switch adds at most four more.
+    ensure(width * (styles == null ? 4 : 8) + ANSI_RESET.length + 1);
+    int end = off + width;
+    if (styles == null) {
+      encode(chars, off, end);
+      put((byte) '\n');
+      return;
+    }
+    TextStyle currentStyle = TextStyle.NORMAL;
+    int runStart = off;
+    for (int j = off; j < end; j++) {
+      TextStyle nextStyle = styles[j];
+      if (nextStyle != currentStyle) {
+        encode(chars, runStart, j);
+        runStart = j;
+        put(nextStyle == TextStyle.BOLD ? ANSI_BOLD : ANSI_RESET);
+        currentStyle = nextStyle;
+      }
+    }
+    encode(chars, runStart, end);
+    if (currentStyle == TextStyle.BOLD) {
+      put(ANSI_RESET);
+    }
+    put((byte) '\n');
+  }
+
+  // Writes the frame and returns its size in bytes.
+  int end() {
+    write(ByteBuffer.wrap(bytes, 0, length));
+    return length;
+  }
+
+  byte[] toByteArray() {
+    return java.util.Arrays.copyOf(bytes, length);
+  }
+
+  private void write(ByteBuffer buffer) {
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void encode(char[] chars, int from, int to) {
+    byte[] b = bytes;
+    int n = length;
+    for (int j = from; j < to; j++) {
+      char c = chars[j];
+      if (c < 0x80) {
+        b[n++] = (byte) c;
+      } else if (c < 0x800) {
+        b[n++] = (byte) (0xc0 | c >> 6);
+        b[n++] = (byte) (0x80 | c & 0x3f);
+      } else if (c >= GLYPH_START && c < GLYPH_START + GLYPH_COUNT) {
+        int g = (c - GLYPH_START) * 3;
+        b[n++] = GLYPHS[g];
+        b[n++] = GLYPHS[g + 1];
+        b[n++] = GLYPHS[g + 2];
+      } else if (Character.isHighSurrogate(c)
+          && j + 1 < to
+          && Character.isLowSurrogate(chars[j + 1])) {
+        int cp = Character.toCodePoint(c, chars[++j]);
+        b[n++] = (byte) (0xf0 | cp >> 18);
+        b[n++] = (byte) (0x80 | cp >> 12 & 0x3f);
+        b[n++] = (byte) (0x80 | cp >> 6 & 0x3f);
+        b[n++] = (byte) (0x80 | cp & 0x3f);
+      } else if (Character.isSurrogate(c)) {
+        b[n++] = '?';
+      } else {
+        b[n++] = (byte) (0xe0 | c >> 12);
+        b[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+        b[n++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    length = n;
+  }
+
+  private void put(byte b) {
+    bytes[length++] = b;
+  }
+
+  private void put(byte[] b) {
+    System.arraycopy(b, 0, bytes, length, b.length);
+    length += b.length;
+  }
+
+  private void ensure(int extra) {
+    if (length + extra > bytes.length) {
+      bytes = java.util.Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package codes.ry.xanadu.render;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for one frame rasterized to its sinks, timed over the whole dump. */
+@Name("codes.ry.xanadu.FrameRendered")
+@Label("Frame Rendered")
+@Category({"Xanadu", "Rendering"})
+@Description("A frame rasterized and written to the screen, a tap or an encoder")
+final class FrameRendered extends jdk.jfr.Event {
+  @Label("Cells")
+  long cells;
+
+  @Label("Rows")
+  int rows;
+}
@@ -3,72 +3,172 @@ package codes.ry.xanadu.render;
 import codes.ry.xanadu.Frame;
 import codes.ry.xanadu.Image;
 import codes.ry.xanadu.Style;
+import codes.ry.xanadu.StyledImages;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 
+/**
+ * Renders an {@link Iterable} as a tree, one row group per item.
+ *
+ * <p>Items are pulled lazily and nested iterables are walked with an explicit stack, so every
+ * leaf lands in one flat vertical run behind a prefix of tree connectors for all its levels. When
+ * the context clips frames to a height, items stop being pulled once that height is used up and a
+ * "… N more" row (or "…" when the remaining count is unknown) closes the output. Items also
+ * stop once the context's cell budget or deadline is spent.
+ */
 final class IterableRendererProvider implements RendererProvider {
+  private static final int NORTH = 0b1000;
+  private static final int EAST = 0b0100;
+  private static final int SOUTH = 0b0010;
+
   @Override
   public boolean supports(Object value) {
     return value instanceof Iterable<?>;
   }
 
+  @Override
+  public Class<?> supportedType() {
+    return Iterable.class;
+  }
+
   @Override
   public Renderer renderer() {
     return new Renderer() {
       @Override
       public Image render(Object value, RenderContext context) {
-        Iterable<?> iterable = (Iterable<?>) value;
-        var items = new java.util.ArrayList<>();
-        for (Object item : iterable) {
-          items.add(item);
-        }
-        Frame combined = null;
-        for (int index = 0; index < items.size(); index++) {
-          Object item = items.get(index);
-          Image rendered = context.service.render(item, context);
-          Frame frame = asFrame(rendered, context);
-          Frame row = prefixWithTreeConnector(frame, index, items.size(), context);
-          combined = combined == null ? row : combined.appendVertical(row);
-        }
-        return combined == null ? context.style.text("") : combined;
+        return renderTree((Iterable<?>) value, context);
       }
     };
   }
 
-  private Frame prefixWithTreeConnector(
-      Frame frame,
-      int index,
-      int total,
-      RenderContext context) {
-    Style tree = Style.tree();
-    boolean first = index == 0;
-    boolean last = index == total - 1;
-    Image connector = (i, j) -> {
-      if (i < 0 || i >= frame.height) {
-        return ' ';
+  private Frame renderTree(Iterable<?> root, RenderContext context) {
+    int budget = context.clipFrames && context.maxHeight > 0 ? context.maxHeight : 0;
+    List<Level> stack = new ArrayList<>();
+    stack.add(new Level(root.iterator()));
+    Frame combined = null;
+    boolean truncated = false;
+    while (!stack.isEmpty()) {
+      Level level = stack.get(stack.size() - 1);
+      if (!level.items.hasNext()) {
+        stack.remove(stack.size() - 1);
+        continue;
       }
-      if (j == 0) {
-        if (i == 0) {
-          int mask = 0;
-          if (!first) {
-            mask |= 0b1000;
-          }
-          if (!last) {
-            mask |= 0b0010;
-          }
-          mask |= 0b0100;
-          return tree.glyph(mask);
+      if (context.exhausted()) {
+        // A leaf cut off by its own renderer already carries the marker.
+        if (truncated) {
+          return combined;
         }
-        if (!last) {
-          return tree.glyph(0b1000 | 0b0010);
+        return appendRow(combined, context.style.text(RenderContext.TRUNCATED));
+      }
+      Object item = level.items.next();
+      level.first = level.index == 0;
+      level.index++;
+      level.last = !level.items.hasNext();
+      level.started = false;
+      Frame leaf;
+      if (item instanceof Iterable<?>
+          && context.service.providerFor(item) instanceof IterableRendererProvider) {
+        Iterator<?> inner = ((Iterable<?>) item).iterator();
+        if (inner.hasNext()) {
+          stack.add(new Level(inner));
+          continue;
         }
-        return ' ';
+        leaf = context.style.text("");
+      } else {
+        leaf = asFrame(context.service.render(item, context), context);
       }
-      if (j == 1) {
-        return i == 0 ? tree.glyph(0b0100) : ' ';
+      truncated = endsTruncated(leaf);
+      int rows = combined == null ? 0 : combined.height;
+      if (budget > 0 && hasMore(stack) && rows + leaf.height + 1 > budget) {
+        int room = budget - rows - 1;
+        if (room > 0) {
+          // Clip the cells too, so rows past the cut never reach the tail row below.
+          leaf = context.style.frame(room, leaf.width, StyledImages.clip(leaf, room, leaf.width));
+          combined = appendRow(combined, prefix(stack, leaf.height).append(leaf));
+        }
+        return appendRow(combined, context.style.text(tail(root, stack.get(0))));
       }
-      return ' ';
-    };
-    Frame prefix = tree.frame(frame.height, 2, connector);
-    return prefix.append(frame);
+      combined = appendRow(combined, prefix(stack, leaf.height).append(leaf));
+    }
+    return combined == null ? context.style.text("") : combined;
+  }
+
+  private static Frame appendRow(Frame combined, Frame row) {
+    return combined == null ? row : combined.appendVertical(row);
+  }
+
+  private static boolean endsTruncated(Frame leaf) {
+    int width = RenderContext.TRUNCATED.length();
+    if (leaf.height <= 0 || leaf.width < width) {
+      return false;
+    }
+    char[] row = new char[leaf.width];
+    leaf.readRow(leaf.height - 1, 0, leaf.width, row, 0);
+    int end = row.length;
+    while (end > 0 && row[end - 1] == ' ') {
+      end--;
+    }
+    return end >= width && new String(row, end - width, width).equals(RenderContext.TRUNCATED);
+  }
+
+  private static boolean hasMore(List<Level> stack) {
+    for (Level level : stack) {
+      if (!level.last) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String tail(Iterable<?> root, Level top) {
+    if (root instanceof Collection<?>) {
+      // The item that was pulled but never drawn is still left.
+      int remaining = ((Collection<?>) root).size() - top.index + (top.started ? 0 : 1);
+      if (remaining > 0) {
+        return "… " + remaining + " more";
+      }
+    }
+    return "…";
+  }
+
+  // Connectors for every level: the first row of a level's item gets its branch, later rows a
+  // vertical line while that level has items left.
+  private Frame prefix(List<Level> stack, int height) {
+    Style tree = Style.tree();
+    int width = stack.size() * 2;
+    char[] first = new char[width];
+    char[] rest = new char[width];
+    for (int k = 0; k < stack.size(); k++) {
+      Level level = stack.get(k);
+      char line = level.last ? ' ' : tree.glyph(NORTH | SOUTH);
+      if (level.started) {
+        first[2 * k] = line;
+        first[2 * k + 1] = ' ';
+      } else {
+        int mask = EAST;
+        if (!level.first) {
+          mask |= NORTH;
+        }
+        if (!level.last) {
+          mask |= SOUTH;
+        }
+        first[2 * k] = tree.glyph(mask);
+        first[2 * k + 1] = tree.glyph(EAST);
+        level.started = true;
+      }
+      rest[2 * k] = line;
+      rest[2 * k + 1] = ' ';
+    }
+    Image connector =
+        (i, j) -> {
+          if (i < 0 || i >= height || j < 0 || j >= width) {
+            return ' ';
+          }
+          return i == 0 ? first[j] : rest[j];
+        };
+    return tree.frame(height, width, connector);
   }
 
   private Frame asFrame(Image image, RenderContext context) {
@@ -77,4 +177,17 @@ final class IterableRendererProvider implements RendererProvider {
     }
     return context.style.frame(1, 1, image.limit(1, 1));
   }
+
+  private static final class Level {
+    private final Iterator<?> items;
+    private int index;
+    private boolean first;
+    private boolean last;
+    // Whether the current item has already drawn its first row.
+    private boolean started;
+
+    private Level(Iterator<?> items) {
+      this.items = items;
+    }
+  }
 }
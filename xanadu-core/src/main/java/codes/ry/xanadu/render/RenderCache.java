@@ -0,0 +1,314 @@
+package codes.ry.xanadu.render;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Least-recently-used store of encoded render output, bounded by the bytes it holds.
+ *
+ * <p>Entries are keyed by the rendered value plus the geometry, services and cell budget that
+ * shaped its output. Strings, boxed primitives, big numbers and enums are matched by equality and
+ * count toward the bound. Images are matched by identity through a weak reference, so the cache
+ * never keeps one alive; a frame is matched by the image it shows, its size and its draw rect.
+ * Nothing else is cached, since it may change without the cache knowing. An image whose cells
+ * change in place must be dropped with {@link #invalidate}.
+ *
+ * <p>A value is only stored the second time it misses, so one-shot output such as a query result
+ * streams straight through instead of filling the cache.
+ */
+public final class RenderCache {
+  public static final long DEFAULT_CAPACITY_BYTES = 8L << 20;
+  private static final int MAX_CANDIDATES = 1024;
+
+  private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+  // Keys that missed once; a second miss admits them.
+  private final LinkedHashMap<Key, Boolean> candidates =
+      new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+          return size() > MAX_CANDIDATES;
+        }
+      };
+  private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+  private final long capacityBytes;
+  private long sizeBytes;
+  private long hits;
+  private long misses;
+
+  public RenderCache(long capacityBytes) {
+    this.capacityBytes = capacityBytes;
+  }
+
+  public static boolean cacheable(Object value) {
+    return isImmutableValue(value) || value instanceof Image;
+  }
+
+  public synchronized byte[] get(Object value, RenderContext context) {
+    expunge();
+    byte[] encoded = entries.get(Key.lookup(value, context));
+    if (encoded == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return encoded;
+  }
+
+  // True when value missed before and is worth encoding for put; otherwise remembers the miss.
+  public synchronized boolean admit(Object value, RenderContext context) {
+    if (!cacheable(value)) {
+      return false;
+    }
+    Key key = Key.lookup(value, context);
+    if (candidates.remove(key) != null) {
+      return true;
+    }
+    candidates.put(Key.stored(value, context, collected), Boolean.TRUE);
+    return false;
+  }
+
+  public synchronized void put(Object value, RenderContext context, byte[] encoded) {
+    if (!cacheable(value)) {
+      return;
+    }
+    expunge();
+    Key key = Key.stored(value, context, collected);
+    if (encoded.length + key.bytes > capacityBytes) {
+      return;
+    }
+    byte[] previous = entries.put(key, encoded);
+    if (previous != null) {
+      sizeBytes -= previous.length + key.bytes;
+    }
+    sizeBytes += encoded.length + key.bytes;
+    Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+    while (sizeBytes > capacityBytes && it.hasNext()) {
+      Map.Entry<Key, byte[]> entry = it.next();
+      sizeBytes -= entry.getValue().length + entry.getKey().bytes;
+      it.remove();
+    }
+  }
+
+  // Drops every entry rendered from value, or from a frame showing it, at any geometry.
+  public synchronized void invalidate(Object value) {
+    if (value == null) {
+      return;
+    }
+    Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key, byte[]> entry = it.next();
+      if (entry.getKey().matches(value)) {
+        sizeBytes -= entry.getValue().length + entry.getKey().bytes;
+        it.remove();
+      }
+    }
+    candidates.keySet().removeIf(key -> key.matches(value));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    candidates.clear();
+    sizeBytes = 0;
+  }
+
+  public long capacityBytes() {
+    return capacityBytes;
+  }
+
+  public synchronized long sizeBytes() {
+    return sizeBytes;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  // Drops entries whose image has been collected; they can never be looked up again.
+  private void expunge() {
+    Reference<?> ref;
+    while ((ref = collected.poll()) != null) {
+      Key key = ((KeyReference) ref).key;
+      byte[] encoded = entries.remove(key);
+      if (encoded != null) {
+        sizeBytes -= encoded.length + key.bytes;
+      }
+      candidates.remove(key);
+    }
+  }
+
+  private static boolean isImmutableValue(Object value) {
+    return value == null
+        || value instanceof String
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof Double
+        || value instanceof Float
+        || value instanceof Boolean
+        || value instanceof Character
+        || value instanceof java.math.BigInteger
+        || value instanceof java.math.BigDecimal
+        || value instanceof Enum<?>;
+  }
+
+  private static final class KeyReference extends WeakReference<Object> {
+    private Key key;
+
+    private KeyReference(Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+    }
+  }
+
+  private static final class Key {
+    // The value itself when matched by equality, else null.
+    private final Object value;
+    // The image matched by identity, else null.
+    private final Reference<Object> image;
+    private final int identityHash;
+    // -1 unless the value is a frame: the size and draw rect it shows its image through.
+    private final int frameHeight;
+    private final int frameWidth;
+    private final int drawTop;
+    private final int drawLeft;
+    private final int drawHeight;
+    private final int drawWidth;
+    private final Object frameStyle;
+    private final Object style;
+    private final RenderService service;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final boolean clipFrames;
+    private final long cellBudget;
+    // What the key itself holds on to, counted toward the bound.
+    private final long bytes;
+
+    private Key(Object value, RenderContext context, ReferenceQueue<Object> queue) {
+      Object target = value;
+      if (value instanceof Frame) {
+        Frame frame = (Frame) value;
+        target = frame.image;
+        this.frameHeight = frame.height;
+        this.frameWidth = frame.width;
+        this.drawTop = frame.drawRect.top;
+        this.drawLeft = frame.drawRect.left;
+        this.drawHeight = frame.drawRect.height;
+        this.drawWidth = frame.drawRect.width;
+        this.frameStyle = frame.style;
+      } else {
+        this.frameHeight = -1;
+        this.frameWidth = -1;
+        this.drawTop = 0;
+        this.drawLeft = 0;
+        this.drawHeight = 0;
+        this.drawWidth = 0;
+        this.frameStyle = null;
+      }
+      if (isImmutableValue(value)) {
+        this.value = value;
+        this.image = null;
+        this.identityHash = Objects.hashCode(value);
+      } else if (queue == null) {
+        this.value = null;
+        this.image = new WeakReference<>(target);
+        this.identityHash = System.identityHashCode(target);
+      } else {
+        KeyReference ref = new KeyReference(target, queue);
+        ref.key = this;
+        this.value = null;
+        this.image = ref;
+        this.identityHash = System.identityHashCode(target);
+      }
+      this.style = context.style;
+      this.service = context.service;
+      this.maxWidth = context.maxWidth;
+      this.maxHeight = context.maxHeight;
+      this.clipFrames = context.clipFrames;
+      this.cellBudget = context.cellBudget;
+      this.bytes =
+          value instanceof String ? (long) ((String) value).length() * Character.BYTES : 0;
+    }
+
+    // A key to look an entry up by; never stored, so its reference needs no queue.
+    private static Key lookup(Object value, RenderContext context) {
+      return new Key(value, context, null);
+    }
+
+    private static Key stored(Object value, RenderContext context, ReferenceQueue<Object> queue) {
+      return new Key(value, context, queue);
+    }
+
+    private boolean matches(Object other) {
+      if (image == null) {
+        return Objects.equals(value, other);
+      }
+      Object target = image.get();
+      return target != null
+          && (target == other || other instanceof Frame && target == ((Frame) other).image);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      if (image == null) {
+        if (other.image != null || !Objects.equals(value, other.value)) {
+          return false;
+        }
+      } else {
+        Object target = image.get();
+        if (other.image == null || target == null || target != other.image.get()) {
+          return false;
+        }
+      }
+      return frameHeight == other.frameHeight
+          && frameWidth == other.frameWidth
+          && drawTop == other.drawTop
+          && drawLeft == other.drawLeft
+          && drawHeight == other.drawHeight
+          && drawWidth == other.drawWidth
+          && frameStyle == other.frameStyle
+          && style == other.style
+          && service == other.service
+          && maxWidth == other.maxWidth
+          && maxHeight == other.maxHeight
+          && clipFrames == other.clipFrames
+          && cellBudget == other.cellBudget;
+    }
+
+    @Override
+    public int hashCode() {
+      int h = identityHash;
+      h = h * 31 + frameHeight;
+      h = h * 31 + frameWidth;
+      h = h * 31 + drawHeight;
+      h = h * 31 + drawWidth;
+      h = h * 31 + System.identityHashCode(style);
+      h = h * 31 + System.identityHashCode(service);
+      h = h * 31 + maxWidth;
+      h = h * 31 + maxHeight;
+      h = h * 31 + (clipFrames ? 1 : 0);
+      return h * 31 + Long.hashCode(cellBudget);
+    }
+  }
+}
@@ -2,73 +2,425 @@ package codes.ry.xanadu.render;
 
 import codes.ry.xanadu.Frame;
 import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Rect;
 import codes.ry.xanadu.Style;
 import codes.ry.xanadu.StyledImage;
 import codes.ry.xanadu.TextStyle;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class RenderContext {
   private static final String ANSI_BOLD = "\u001b[1m";
   private static final String ANSI_RESET = "\u001b[0m";
+  // Frames of at least this many cells are rasterized in bands on the common pool, but only when
+  // their image is immutable: a materialized or cached frame, or one built from such images. Any
+  // other image, such as a live Scroll, may change or keep state while it is read, so it is
+  // always read on the rendering thread.
+  public static final int DEFAULT_PARALLEL_CELLS = 1 << 16;
+  public static final String TRUNCATED = "… (render truncated)";
   public final Style style;
   public final int maxWidth;
   public final int maxHeight;
   public final RenderService service;
   public final boolean clipFrames;
+  // Immutable frames of at least this many cells are rasterized in parallel bands; 0 disables it.
+  public final int parallelCells;
+  // Cells renderers may produce before stopping, and wall-clock time for the whole render; 0
+  // means no limit. Copies made by withGeometry share the count and the start time.
+  public final long cellBudget;
+  public final long timeoutNanos;
+  private final long startNanos;
+  private final java.util.concurrent.atomic.AtomicLong cells;
 
   public RenderContext(
       Style style, int maxWidth, int maxHeight, RenderService service, boolean clipFrames) {
+    this(style, maxWidth, maxHeight, service, clipFrames, DEFAULT_PARALLEL_CELLS);
+  }
+
+  public RenderContext(
+      Style style,
+      int maxWidth,
+      int maxHeight,
+      RenderService service,
+      boolean clipFrames,
+      int parallelCells) {
+    this(
+        style,
+        maxWidth,
+        maxHeight,
+        service,
+        clipFrames,
+        parallelCells,
+        0,
+        0,
+        System.nanoTime(),
+        new java.util.concurrent.atomic.AtomicLong());
+  }
+
+  private RenderContext(
+      Style style,
+      int maxWidth,
+      int maxHeight,
+      RenderService service,
+      boolean clipFrames,
+      int parallelCells,
+      long cellBudget,
+      long timeoutNanos,
+      long startNanos,
+      java.util.concurrent.atomic.AtomicLong cells) {
     this.style = style;
     this.maxWidth = maxWidth;
     this.maxHeight = maxHeight;
     this.service = service;
     this.clipFrames = clipFrames;
+    this.parallelCells = parallelCells;
+    this.cellBudget = cellBudget;
+    this.timeoutNanos = timeoutNanos;
+    this.startNanos = startNanos;
+    this.cells = cells;
+  }
+
+  // A fresh budget whose clock starts now.
+  public RenderContext withBudget(long cellBudget, long timeoutMillis) {
+    return new RenderContext(
+        style,
+        maxWidth,
+        maxHeight,
+        service,
+        clipFrames,
+        parallelCells,
+        Math.max(0, cellBudget),
+        Math.max(0, timeoutMillis) * 1_000_000L,
+        System.nanoTime(),
+        new java.util.concurrent.atomic.AtomicLong());
+  }
+
+  // Same budget, different target size; for renders nested inside this one.
+  public RenderContext withGeometry(int maxWidth, int maxHeight, boolean clipFrames) {
+    return new RenderContext(
+        style,
+        maxWidth,
+        maxHeight,
+        service,
+        clipFrames,
+        parallelCells,
+        cellBudget,
+        timeoutNanos,
+        startNanos,
+        cells);
+  }
+
+  // Everything else kept, budget included; for a sink that clips differently from the screen.
+  public RenderContext withClipFrames(boolean clipFrames) {
+    return withGeometry(maxWidth, maxHeight, clipFrames);
+  }
+
+  // Records cells a renderer produced; false once the budget or the deadline is spent.
+  public boolean charge(long produced) {
+    long used = cells.addAndGet(produced);
+    return !(cellBudget > 0 && used > cellBudget) && !expired();
+  }
+
+  public long remainingCells() {
+    if (cellBudget <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, cellBudget - cells.get());
+  }
+
+  public boolean expired() {
+    return timeoutNanos > 0 && System.nanoTime() - startNanos >= timeoutNanos;
+  }
+
+  public boolean exhausted() {
+    return cellBudget > 0 && cells.get() >= cellBudget || expired();
   }
 
   public void dump(Image image, PrintWriter writer) {
+    dump(image, List.of(RenderSink.of(writer, maxWidth, maxHeight, clipFrames)));
+  }
+
+  // Writes the frame to the encoder's channel in one call.
+  public void dump(Image image, FrameEncoder encoder) {
+    dump(image, List.of(RenderSink.of(encoder, maxWidth, maxHeight, clipFrames)));
+  }
+
+  // Reads each cell once however many sinks there are; every sink gets its own clipped view.
+  public void dump(Image image, List<RenderSink> sinks) {
+    FrameRendered event = new FrameRendered();
+    event.begin();
+    dumpLocked(image, sinks, 0, event);
+    event.commit();
+  }
+
+  // Holds every encoder's lock for the whole dump, since each encodes into one shared buffer.
+  private void dumpLocked(Image image, List<RenderSink> sinks, int from, FrameRendered event) {
+    for (int k = from; k < sinks.size(); k++) {
+      FrameEncoder encoder = sinks.get(k).encoder;
+      if (encoder != null) {
+        synchronized (encoder) {
+          dumpLocked(image, sinks, k + 1, event);
+        }
+        return;
+      }
+    }
+    List<Target> targets = new ArrayList<>(sinks.size());
+    for (RenderSink sink : sinks) {
+      RowWriter writer;
+      if (sink.encoder != null) {
+        sink.encoder.begin();
+        writer = sink.encoder::row;
+      } else {
+        PrintWriter out = sink.writer;
+        out.append('\n');
+        sink.written++;
+        writer =
+            (chars, styles, off, rowWidth) ->
+                sink.written += writeRow(out, chars, styles, off, rowWidth);
+      }
+      targets.add(target(image, writer, sink.maxWidth, sink.maxHeight, sink.clipFrames, sink.ansi));
+    }
+    rasterize(image, targets, event);
+    for (RenderSink sink : sinks) {
+      if (sink.encoder != null) {
+        sink.written += sink.encoder.end();
+      }
+    }
+  }
+
+  // The bytes dump(image, encoder) would write, for callers that keep them.
+  public byte[] encode(Image image) {
+    FrameRendered event = new FrameRendered();
+    event.begin();
+    FrameEncoder encoder = new FrameEncoder(null);
+    encoder.begin();
+    rasterize(
+        image,
+        List.of(target(image, encoder::row, maxWidth, maxHeight, clipFrames, true)),
+        event);
+    event.commit();
+    return encoder.toByteArray();
+  }
+
+  private Target target(
+      Image image,
+      RowWriter writer,
+      int maxWidth,
+      int maxHeight,
+      boolean clipFrames,
+      boolean ansi) {
     int height = maxHeight;
     int width = maxWidth;
-    Frame frame = null;
-    StyledImage styled = null;
     if (image instanceof Frame) {
-      frame = (Frame) image;
+      Frame frame = (Frame) image;
       height = frame.drawRect.height;
       width = frame.drawRect.width;
-      if (frame.image instanceof StyledImage) {
-        styled = (StyledImage) frame.image;
-      }
       if (clipFrames && maxHeight > 0) {
         height = Math.min(height, maxHeight);
       }
       if (clipFrames && maxWidth > 0) {
         width = Math.min(width, maxWidth);
       }
+    }
+    width = Math.max(0, width);
+    // The cell budget also caps how much of a frame is written out.
+    long rowLimit = cellBudget > 0 ? Math.max(1, cellBudget / Math.max(1, width)) : height;
+    return new Target(writer, height, width, rowLimit, ansi);
+  }
+
+  // Fills in the event's size; the caller times and commits it.
+  private void rasterize(Image image, List<Target> targets, FrameRendered event) {
+    Frame frame = null;
+    StyledImage styled = null;
+    if (image instanceof Frame) {
+      frame = (Frame) image;
+      if (frame.image instanceof StyledImage) {
+        styled = (StyledImage) frame.image;
+      }
     } else if (image instanceof StyledImage) {
       styled = (StyledImage) image;
     }
-    writer.append('\n');
-    for (int i = 0; i < height; i++) {
-      TextStyle currentStyle = TextStyle.NORMAL;
-      int drawI = frame == null ? i : i + frame.drawRect.top;
-      for (int j = 0; j < width; j++) {
-        int drawJ = frame == null ? j : j + frame.drawRect.left;
-        if (styled != null) {
-          TextStyle nextStyle = styled.styleAt(drawI, drawJ);
-          if (nextStyle != currentStyle) {
-            if (nextStyle == TextStyle.BOLD) {
-              writer.append(ANSI_BOLD);
-            } else {
-              writer.append(ANSI_RESET);
-            }
-            currentStyle = nextStyle;
-          }
+    int height = 0;
+    int width = 0;
+    boolean ansi = false;
+    for (Target target : targets) {
+      height = (int) Math.max(height, Math.min(target.height, target.rowLimit));
+      width = Math.max(width, target.width);
+      ansi |= target.ansi;
+    }
+    event.rows = height;
+    event.cells = (long) height * width;
+    Rows rows = new Rows(image, frame, ansi ? styled : null, width);
+    if (parallelCells > 0
+        && image.immutable()
+        && height > 1
+        && (long) height * width >= parallelCells
+        && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      dumpBands(rows, height, targets);
+    } else {
+      char[] chars = new char[width];
+      TextStyle[] styles = rows.styled == null ? null : new TextStyle[width];
+      for (int i = 0; i < height && !expired(); i++) {
+        boolean hasStyles = rows.read(i, chars, styles, 0);
+        for (Target target : targets) {
+          target.row(i, chars, hasStyles ? styles : null, 0);
+        }
+      }
+    }
+    for (Target target : targets) {
+      if (target.written < target.height) {
+        target.writer.row(TRUNCATED.toCharArray(), null, 0, TRUNCATED.length());
+      }
+    }
+  }
+
+  // Rasterizes bands of rows on the common pool and writes each band as soon as it and every
+  // band above it are done.
+  private void dumpBands(Rows rows, int height, List<Target> targets) {
+    int bandCount = Math.min(height, ForkJoinPool.getCommonPoolParallelism() * 4);
+    int bandHeight = (height + bandCount - 1) / bandCount;
+    List<ForkJoinTask<Band>> bands = new ArrayList<>();
+    for (int top = 0; top < height; top += bandHeight) {
+      int from = top;
+      int to = Math.min(height, top + bandHeight);
+      bands.add(ForkJoinPool.commonPool().submit(() -> rows.band(from, to)));
+    }
+    int i = 0;
+    for (ForkJoinTask<Band> task : bands) {
+      if (expired()) {
+        for (ForkJoinTask<Band> pending : bands) {
+          pending.cancel(false);
         }
-        writer.append(image.at(i, j));
+        return;
       }
-      if (currentStyle == TextStyle.BOLD) {
-        writer.append(ANSI_RESET);
+      Band band = task.join();
+      for (int k = 0; k < band.rows; k++, i++) {
+        TextStyle[] styles = band.styledRows[k] ? band.styles : null;
+        for (Target target : targets) {
+          target.row(i, band.chars, styles, k * rows.width);
+        }
       }
+    }
+  }
+
+  // Returns the number of chars written, escape sequences included.
+  private static int writeRow(
+      PrintWriter writer, char[] chars, TextStyle[] styles, int off, int rowWidth) {
+    if (styles == null) {
+      writer.write(chars, off, rowWidth);
       writer.append('\n');
+      return rowWidth + 1;
+    }
+    int written = rowWidth + 1;
+    TextStyle currentStyle = TextStyle.NORMAL;
+    int runStart = off;
+    int end = off + rowWidth;
+    for (int j = off; j < end; j++) {
+      TextStyle nextStyle = styles[j];
+      if (nextStyle != currentStyle) {
+        writer.write(chars, runStart, j - runStart);
+        runStart = j;
+        String escape = nextStyle == TextStyle.BOLD ? ANSI_BOLD : ANSI_RESET;
+        writer.append(escape);
+        written += escape.length();
+        currentStyle = nextStyle;
+      }
+    }
+    writer.write(chars, runStart, end - runStart);
+    if (currentStyle == TextStyle.BOLD) {
+      writer.append(ANSI_RESET);
+      written += ANSI_RESET.length();
+    }
+    writer.append('\n');
+    return written;
+  }
+
+  private interface RowWriter {
+    // styles is null for a row without styling.
+    void row(char[] chars, TextStyle[] styles, int off, int rowWidth);
+  }
+
+  private static final class Target {
+    private final RowWriter writer;
+    private final int height;
+    private final int width;
+    private final long rowLimit;
+    private final boolean ansi;
+    private int written;
+
+    private Target(RowWriter writer, int height, int width, long rowLimit, boolean ansi) {
+      this.writer = writer;
+      this.height = height;
+      this.width = width;
+      this.rowLimit = rowLimit;
+      this.ansi = ansi;
+    }
+
+    private void row(int i, char[] chars, TextStyle[] styles, int off) {
+      if (i < height && i < rowLimit) {
+        writer.row(chars, ansi ? styles : null, off, width);
+        written++;
+      }
+    }
+  }
+
+  private static final class Rows {
+    private final Image image;
+    private final StyledImage styled;
+    private final int top;
+    private final int left;
+    private final int width;
+    private final Rect bounds;
+
+    private Rows(Image image, Frame frame, StyledImage styled, int width) {
+      this.image = image;
+      this.styled = styled;
+      this.top = frame == null ? 0 : frame.drawRect.top;
+      this.left = frame == null ? 0 : frame.drawRect.left;
+      this.width = width;
+      this.bounds = image.bounds();
+    }
+
+    // Returns whether styles were read; rows outside the bounds are blank and unstyled.
+    private boolean read(int i, char[] chars, TextStyle[] styles, int off) {
+      if (bounds != null && (i < bounds.top || i >= bounds.bottom)) {
+        java.util.Arrays.fill(chars, off, off + width, ' ');
+        return false;
+      }
+      image.readRow(i, 0, width, chars, off);
+      if (styles == null) {
+        return false;
+      }
+      styled.readStyles(i + top, left, left + width, styles, off);
+      return true;
+    }
+
+    private Band band(int from, int to) {
+      int count = to - from;
+      char[] chars = new char[count * width];
+      TextStyle[] styles = styled == null ? null : new TextStyle[count * width];
+      boolean[] styledRows = new boolean[count];
+      for (int k = 0; k < count; k++) {
+        styledRows[k] = read(from + k, chars, styles, k * width);
+      }
+      return new Band(count, chars, styles, styledRows);
+    }
+  }
+
+  private static final class Band {
+    private final int rows;
+    private final char[] chars;
+    private final TextStyle[] styles;
+    private final boolean[] styledRows;
+
+    private Band(int rows, char[] chars, TextStyle[] styles, boolean[] styledRows) {
+      this.rows = rows;
+      this.chars = chars;
+      this.styles = styles;
+      this.styledRows = styledRows;
     }
   }
 }
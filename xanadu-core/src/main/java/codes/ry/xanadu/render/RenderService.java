@@ -7,6 +7,15 @@ public final class RenderService {
   private final List<RendererProvider> providers;
   private final List<RendererProvider> enabled;
   private final List<RendererProvider> disabled;
+  // Enabled providers first, then the rest, minus disabled ones: the order render tries them in.
+  private final RendererProvider[] active;
+  private final ClassValue<RendererProvider[]> candidates =
+      new ClassValue<>() {
+        @Override
+        protected RendererProvider[] computeValue(Class<?> type) {
+          return resolve(type);
+        }
+      };
 
   public RenderService(List<RendererProvider> providers) {
     this(providers, List.of(), List.of());
@@ -19,26 +28,43 @@ public final class RenderService {
     this.providers = List.copyOf(providers);
     this.enabled = List.copyOf(enabled);
     this.disabled = List.copyOf(disabled);
+    var order = new java.util.ArrayList<RendererProvider>();
+    for (RendererProvider provider : this.enabled) {
+      if (!this.disabled.contains(provider)) {
+        order.add(provider);
+      }
+    }
+    for (RendererProvider provider : this.providers) {
+      if (!this.disabled.contains(provider) && !this.enabled.contains(provider)) {
+        order.add(provider);
+      }
+    }
+    this.active = order.toArray(new RendererProvider[0]);
   }
 
   public Image render(Object value, RenderContext context) {
-    for (RendererProvider provider : enabled) {
-      if (disabled.contains(provider)) {
-        continue;
-      }
-      if (provider.supports(value)) {
-        return provider.renderer().render(value, context);
-      }
+    if (context.exhausted()) {
+      return context.style.text("…");
     }
-    for (RendererProvider provider : providers) {
-      if (disabled.contains(provider) || enabled.contains(provider)) {
-        continue;
-      }
-      if (provider.supports(value)) {
-        return provider.renderer().render(value, context);
+    RendererProvider provider = providerFor(value);
+    if (provider == null) {
+      return context.style.text(String.valueOf(value));
+    }
+    if (provider instanceof ToStringRendererProvider) {
+      return ToStringRendererProvider.RENDERER.render(value, context);
+    }
+    return provider.renderer().render(value, context);
+  }
+
+  // The provider render would use for value, or null for the plain text fallback.
+  RendererProvider providerFor(Object value) {
+    RendererProvider[] candidates = value == null ? active : this.candidates.get(value.getClass());
+    for (RendererProvider provider : candidates) {
+      if (provider.supportedType() != null && value != null || provider.supports(value)) {
+        return provider;
       }
     }
-    return context.style.text(String.valueOf(value));
+    return null;
   }
 
   public RenderService enable(RendererProvider provider) {
@@ -62,4 +88,20 @@ public final class RenderService {
   public static RenderService defaults() {
     return new RenderService(List.of(new IterableRendererProvider(), new ToStringRendererProvider()));
   }
+
+  // Providers that may support instances of type, in order. Typed providers that cannot match are
+  // dropped and the first one that always matches ends the list; untyped ones stay in place.
+  private RendererProvider[] resolve(Class<?> type) {
+    var result = new java.util.ArrayList<RendererProvider>();
+    for (RendererProvider provider : active) {
+      Class<?> supported = provider.supportedType();
+      if (supported == null) {
+        result.add(provider);
+      } else if (supported.isAssignableFrom(type)) {
+        result.add(provider);
+        break;
+      }
+    }
+    return result.toArray(new RendererProvider[0]);
+  }
 }
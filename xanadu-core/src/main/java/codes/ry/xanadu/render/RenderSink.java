@@ -0,0 +1,51 @@
+package codes.ry.xanadu.render;
+
+import java.io.PrintWriter;
+
+/**
+ * One destination of {@link RenderContext#dump(codes.ry.xanadu.Image, java.util.List)}, with its
+ * own size limits, clipping and whether it receives ANSI styling.
+ */
+public final class RenderSink {
+  final PrintWriter writer;
+  final FrameEncoder encoder;
+  final int maxWidth;
+  final int maxHeight;
+  final boolean clipFrames;
+  final boolean ansi;
+  // Bytes handed to the encoder, or chars to the writer, by dumps through this sink.
+  long written;
+
+  private RenderSink(
+      PrintWriter writer,
+      FrameEncoder encoder,
+      int maxWidth,
+      int maxHeight,
+      boolean clipFrames,
+      boolean ansi) {
+    this.writer = writer;
+    this.encoder = encoder;
+    this.maxWidth = maxWidth;
+    this.maxHeight = maxHeight;
+    this.clipFrames = clipFrames;
+    this.ansi = ansi;
+  }
+
+  public static RenderSink of(PrintWriter writer, int maxWidth, int maxHeight, boolean clipFrames) {
+    return new RenderSink(writer, null, maxWidth, maxHeight, clipFrames, true);
+  }
+
+  public static RenderSink of(
+      FrameEncoder encoder, int maxWidth, int maxHeight, boolean clipFrames) {
+    return new RenderSink(null, encoder, maxWidth, maxHeight, clipFrames, true);
+  }
+
+  public long written() {
+    return written;
+  }
+
+  // Plain text only: bold runs are written without escape sequences.
+  public RenderSink withoutAnsi() {
+    return new RenderSink(writer, encoder, maxWidth, maxHeight, clipFrames, false);
+  }
+}
@@ -4,4 +4,13 @@ public interface RendererProvider {
   boolean supports(Object value);
 
   Renderer renderer();
+
+  /**
+   * Type whose instances this provider supports, if {@link #supports} is exactly an instanceof
+   * check against it. RenderService then resolves the provider once per class instead of calling
+   * supports for every value. Null means supports must be asked each time.
+   */
+  default Class<?> supportedType() {
+    return null;
+  }
 }
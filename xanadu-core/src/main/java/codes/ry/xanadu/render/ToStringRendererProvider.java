@@ -3,21 +3,42 @@ package codes.ry.xanadu.render;
 import codes.ry.xanadu.Image;
 
 final class ToStringRendererProvider implements RendererProvider {
+  static final Renderer RENDERER =
+      new Renderer() {
+        @Override
+        public Image render(Object value, RenderContext context) {
+          String text = String.valueOf(value);
+          long room = context.remainingCells();
+          if (text.length() > room) {
+            int end = (int) room;
+            if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+              end--;
+            }
+            text = text.substring(0, end) + " " + RenderContext.TRUNCATED;
+          }
+          context.charge(text.length());
+          if (context.maxWidth > 0 && context.clipFrames && context.maxHeight > 0) {
+            return context.style.text(context.maxWidth, text, context.maxHeight);
+          }
+          if (context.maxWidth > 0) {
+            return context.style.text(context.maxWidth, text);
+          }
+          return context.style.text(text);
+        }
+      };
+
   @Override
   public boolean supports(Object value) {
     return true;
   }
 
+  @Override
+  public Class<?> supportedType() {
+    return Object.class;
+  }
+
   @Override
   public Renderer renderer() {
-    return new Renderer() {
-      @Override
-      public Image render(Object value, RenderContext context) {
-        if (context.maxWidth > 0) {
-          return context.style.text(context.maxWidth, String.valueOf(value));
-        }
-        return context.style.text(String.valueOf(value));
-      }
-    };
+    return RENDERER;
   }
 }
@@ -1,7 +1,11 @@
 package codes.ry.xanadu;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import codes.ry.xanadu.render.RenderContext;
+import codes.ry.xanadu.render.RenderSink;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import org.junit.jupiter.api.Test;
@@ -52,6 +56,135 @@ class FrameTest {
         render(table));
   }
 
+  @Test
+  void appendingToSharedPrefixKeepsBranchesIndependent() {
+    Style style = Style.box();
+    Frame prefix = style.text(3, "A").border().appendVertical(style.text(3, "B").border());
+    Frame left = prefix.appendVertical(style.text(3, "C").border());
+    Frame right = prefix.appendVertical(style.text(3, "D").border());
+    assertEquals(
+        "\n┌───┐\n│A  │\n├───┤\n│B  │\n├───┤\n│C  │\n└───┘\n",
+        render(left));
+    assertEquals(
+        "\n┌───┐\n│A  │\n├───┤\n│B  │\n├───┤\n│D  │\n└───┘\n",
+        render(right));
+  }
+
+  @Test
+  void tallStackReadsLastRow() {
+    Style style = Style.box();
+    Frame table = style.text(3, "0").border();
+    for (int i = 1; i < 5000; i++) {
+      table = table.appendVertical(style.text(3, Integer.toString(i % 10)).border());
+    }
+    assertEquals(10001, table.drawRect.height);
+    assertEquals('9', table.at(9999, 1));
+    assertEquals('┘', table.at(10000, 4));
+  }
+
+  @Test
+  void materializedFrameRendersIdentically() {
+    Style style = Style.box();
+    Frame row =
+        style
+            .text(5, "A")
+            .border()
+            .append(style.text(5, "B").border())
+            .appendVertical(style.text(11, "C").border());
+    Frame materialized = row.materialize();
+    assertTrue(materialized.image instanceof CellBuffer);
+    assertEquals(render(row), render(materialized));
+  }
+
+  @Test
+  void materializeKeepsStylePlane() {
+    Image bold = StyledImages.withStyle(Image.text("hi"), TextStyle.BOLD);
+    CellBuffer buffer = bold.materialize(new Rect(0, 0, 1, 4));
+    assertEquals('h', buffer.at(0, 0));
+    assertEquals(TextStyle.BOLD, buffer.styleAt(0, 1));
+    assertEquals(TextStyle.NORMAL, buffer.styleAt(0, 2));
+    assertEquals(' ', buffer.at(3, 3));
+  }
+
+  @Test
+  void bulkRowReadsMatchCellReads() {
+    Style style = Style.box();
+    Image bold = StyledImages.withStyle(Image.text("bold"), TextStyle.BOLD);
+    Frame frame =
+        style
+            .frame(1, 6, bold)
+            .border()
+            .append(style.text(4, "some wrapped text").border())
+            .appendVertical(style.text(3, "x").border().shadow());
+    StyledImage image = (StyledImage) frame.image;
+    Rect rect = frame.drawRect;
+    char[] chars = new char[rect.width + 4];
+    TextStyle[] styles = new TextStyle[rect.width + 4];
+    for (int i = rect.top - 1; i <= rect.bottom; i++) {
+      image.readRow(i, rect.left - 2, rect.right + 2, chars, 0);
+      image.readStyles(i, rect.left - 2, rect.right + 2, styles, 0);
+      for (int j = rect.left - 2; j < rect.right + 2; j++) {
+        assertEquals(image.at(i, j), chars[j - rect.left + 2]);
+        assertEquals(image.styleAt(i, j), styles[j - rect.left + 2]);
+      }
+    }
+  }
+
+  @Test
+  void stackMatchesNestedCombineChain() {
+    Style style = Style.box();
+    Image bold = StyledImages.withStyle(Image.text("bold"), TextStyle.BOLD);
+    Image flood = (i, j) -> i == 0 && j < 9 ? '*' : ' ';
+    Frame a = style.frame(1, 6, bold).border();
+    Frame b = style.frame(1, 3, Image.text("overflowing"));
+    Frame c = style.text(4, "wide draw rect").withDrawRect(new Rect(-2, -3, 8, 10));
+    Frame d = style.frame(1, 2, flood).shadow();
+    Frame e = style.text(3, "x").border().shadow();
+
+    Frame ab = a.append(b);
+    Image expected = baselineCombine(a.image, b.image, 0, ab.width - b.width, style);
+    Frame abc = ab.append(c);
+    expected = baselineCombine(expected, c.image, 0, abc.width - c.width, style);
+    Frame abcd = abc.append(d);
+    expected = baselineCombine(expected, d.image, 0, abcd.width - d.width, style);
+    Frame frame = abcd.appendVertical(e);
+    expected = baselineCombine(expected, e.image, frame.height - e.height, 0, style);
+
+    StyledImage image = (StyledImage) frame.image;
+    StyledImage reference = (StyledImage) expected;
+    Rect rect = frame.drawRect;
+    char[] chars = new char[rect.width + 4];
+    TextStyle[] styles = new TextStyle[rect.width + 4];
+    for (int i = rect.top - 2; i < rect.bottom + 2; i++) {
+      image.readRow(i, rect.left - 2, rect.right + 2, chars, 0);
+      image.readStyles(i, rect.left - 2, rect.right + 2, styles, 0);
+      for (int j = rect.left - 2; j < rect.right + 2; j++) {
+        assertEquals(reference.at(i, j), image.at(i, j));
+        assertEquals(reference.at(i, j), chars[j - rect.left + 2]);
+        assertEquals(reference.styleAt(i, j), image.styleAt(i, j));
+        assertEquals(reference.styleAt(i, j), styles[j - rect.left + 2]);
+      }
+    }
+  }
+
+  // The per-append StyledImages.combine of an offset image that FrameStack replaced.
+  private static Image baselineCombine(Image a, Image b, int di, int dj, Style style) {
+    return new StyledImage() {
+      @Override
+      public char at(int i, int j) {
+        return style.combine(a.at(i, j), b.at(i - di, j - dj));
+      }
+
+      @Override
+      public TextStyle styleAt(int i, int j) {
+        boolean bold =
+            Images.styleAt(a, i, j) == TextStyle.BOLD
+                || Images.styleAt(b, i - di, j - dj) == TextStyle.BOLD;
+        return bold ? TextStyle.BOLD : TextStyle.NORMAL;
+      }
+    };
+  }
+
   private static String render(Frame frame) {
     StringWriter out = new StringWriter();
     PrintWriter writer = new PrintWriter(out);
@@ -59,4 +192,115 @@ class FrameTest {
     writer.flush();
     return out.toString();
   }
+
+  @Test
+  void layersSkipCellsOutsideBounds() {
+    Style style = Style.box();
+    Image bounded = Image.flood(' ');
+    Image unbounded = (i, j) -> ' ';
+    for (int k = 0; k < 40; k++) {
+      int top = (k * 7) % 23;
+      int left = (k * 11) % 37;
+      Frame box = style.frame(2 + k % 3, 3 + k % 5).border();
+      Image layer = box.offset(top + 1, left + 1);
+      Image plain = (i, j) -> layer.at(i, j);
+      if (k % 2 == 0) {
+        bounded = bounded.combine(layer, style);
+        unbounded = unbounded.combine(plain, style);
+      } else {
+        bounded = bounded.overlay(Image.text("#" + k).offset(top, left));
+        unbounded = unbounded.overlay(Image.text("#" + k).offset(top, left));
+      }
+    }
+    Rect bounds = bounded.bounds();
+    assertTrue(bounds != null && bounds.top == 0 && bounds.left == 0);
+    char[] row = new char[50];
+    for (int i = -2; i < 32; i++) {
+      bounded.readRow(i, -2, 48, row, 0);
+      for (int j = -2; j < 48; j++) {
+        assertEquals(unbounded.at(i, j), bounded.at(i, j));
+        assertEquals(unbounded.at(i, j), row[j + 2]);
+      }
+    }
+    assertNull(Image.flood('x').bounds());
+    assertEquals(0, Image.flood(' ').bounds().height);
+  }
+
+  @Test
+  void parallelDumpMatchesSequentialDump() {
+    Style style = Style.box();
+    Frame frame = style.frame(1, 1);
+    for (int k = 0; k < 60; k++) {
+      Image label = StyledImages.withStyle(Image.text("row " + k), k % 3 == 0 ? TextStyle.BOLD : null);
+      frame = frame.appendVertical(style.frame(1, 40, label).border());
+    }
+    StringWriter sequential = new StringWriter();
+    new RenderContext(style, 0, 0, null, false, 0).dump(frame, new PrintWriter(sequential));
+    StringWriter parallel = new StringWriter();
+    new RenderContext(style, 0, 0, null, false, 1).dump(frame, new PrintWriter(parallel));
+    assertEquals(sequential.toString(), parallel.toString());
+  }
+
+  @Test
+  void multiSinkDumpReadsEachCellOnce() {
+    int[] reads = new int[1];
+    Image source =
+        StyledImages.withStyle(
+            (i, j) -> {
+              reads[0]++;
+              return (char) ('a' + Math.floorMod(i * 7 + j, 26));
+            },
+            TextStyle.BOLD);
+    Frame frame = Style.box().frame(12, 30, source);
+    RenderContext context = new RenderContext(Style.box(), 20, 5, null, true, 0);
+
+    StringWriter screenAlone = new StringWriter();
+    context.dump(frame, new PrintWriter(screenAlone));
+    reads[0] = 0;
+    StringWriter tapAlone = new StringWriter();
+    new RenderContext(Style.box(), 0, 0, null, false, 0).dump(frame, new PrintWriter(tapAlone));
+    int tapReads = reads[0];
+    reads[0] = 0;
+
+    StringWriter screen = new StringWriter();
+    StringWriter tap = new StringWriter();
+    context.dump(
+        frame,
+        java.util.List.of(
+            RenderSink.of(new PrintWriter(screen), 20, 5, true),
+            RenderSink.of(new PrintWriter(tap), 0, 0, false)));
+    assertEquals(screenAlone.toString(), screen.toString());
+    assertEquals(tapAlone.toString(), tap.toString());
+    assertEquals(tapReads, reads[0]);
+
+    StringWriter plain = new StringWriter();
+    context.dump(
+        frame, java.util.List.of(RenderSink.of(new PrintWriter(plain), 20, 5, true).withoutAnsi()));
+    assertEquals(screenAlone.toString().replaceAll("\u001b\\[[01]m", ""), plain.toString());
+  }
+
+  @Test
+  void cachedImageComputesEachCellOnce() {
+    int[] reads = new int[1];
+    Image source =
+        StyledImages.withStyle(
+            ((Image) (i, j) -> {
+                  reads[0]++;
+                  return (char) ('a' + Math.floorMod(i * 7 + j, 26));
+                })
+                .bounded(new Rect(0, 0, 20, 50)),
+            TextStyle.BOLD);
+    Frame frame = Style.box().frame(20, 50, source.cached(8));
+    StringWriter first = new StringWriter();
+    frame.dump(new PrintWriter(first));
+    int afterFirst = reads[0];
+    StringWriter second = new StringWriter();
+    frame.dump(new PrintWriter(second));
+    assertEquals(first.toString(), second.toString());
+    assertEquals(afterFirst, reads[0]);
+    StyledImage cached = (StyledImage) frame.image;
+    assertEquals(source.at(3, 4), cached.at(3, 4));
+    assertEquals(TextStyle.BOLD, cached.styleAt(3, 4));
+    assertEquals(TextStyle.NORMAL, cached.styleAt(30, 4));
+  }
 }
@@ -0,0 +1,32 @@
+package codes.ry.xanadu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+class ScrollTest {
+  @Test
+  void spilledChunksReadBackIdentically() {
+    try (Scroll scroll = new Scroll(20, 4096)) {
+      for (int i = 0; i < 5000; i++) {
+        scroll.append(i % 7 == 0 ? "" : "line " + i);
+      }
+      assertEquals(5000, scroll.size());
+      assertEquals("line 1", scroll.line(1));
+      assertEquals("", scroll.line(4998));
+      assertEquals("line 4999", scroll.line(4999));
+      char[] row = new char[12];
+      scroll.readRow(2346, -1, 11, row, 0);
+      assertEquals(" line 2346  ", new String(row));
+      assertEquals('6', scroll.at(2346, 8));
+      assertEquals(' ', scroll.at(5000, 0));
+
+      scroll.scroll(4997);
+      StringWriter out = new StringWriter();
+      scroll.dump(new PrintWriter(out));
+      assertEquals("line 4997\n\nline 4999\n", out.toString());
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package codes.ry.xanadu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TextLinesTest {
+  @Test
+  void wrapsLikeRegexSplitting() {
+    String[] texts = {
+      "",
+      "\n",
+      "a\n",
+      "   ",
+      "  leading and trailing  ",
+      "one two three four five six seven",
+      "tabs\tand  doubled   spaces stay\t\tcollapsed",
+      "windows\r\nbreaks\rand others\u000b\u000cmixed\n\n\nblank",
+      "averyveryverylongwordthatwillnotfit short words after it",
+      "x y z"
+    };
+    for (String text : texts) {
+      for (int cols : new int[] {1, 3, 5, 10, Integer.MAX_VALUE}) {
+        TextLines lines = TextLines.wrap(text, cols);
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < lines.count(); i++) {
+          actual.add(lines.line(i));
+          char[] row = new char[lines.width(i)];
+          lines.getChars(i, 0, row.length, row, 0);
+          assertEquals(lines.line(i), new String(row));
+        }
+        assertEquals(regexWrap(text, cols), actual, text + " @" + cols);
+      }
+    }
+  }
+
+  @Test
+  void stopsAtMaxLines() {
+    TextLines lines = TextLines.wrap("a b c d e f", 1, 2);
+    assertEquals(2, lines.count());
+    assertEquals("b", lines.line(1));
+  }
+
+  // The split-based wrapping text images used before, kept as the reference.
+  private static List<String> regexWrap(String text, int maxWidth) {
+    List<String> result = new ArrayList<>();
+    for (String rawLine : text.split("\\R", -1)) {
+      if (rawLine.isEmpty()) {
+        result.add("");
+        continue;
+      }
+      StringBuilder currentLine = new StringBuilder();
+      for (String word : rawLine.split("\\s+")) {
+        if (currentLine.length() == 0) {
+          currentLine.append(word);
+        } else if (currentLine.length() + 1 + word.length() <= maxWidth) {
+          currentLine.append(' ').append(word);
+        } else {
+          result.add(currentLine.toString());
+          currentLine.setLength(0);
+          currentLine.append(word);
+        }
+      }
+      if (currentLine.length() > 0) {
+        result.add(currentLine.toString());
+      }
+    }
+    return result;
+  }
+}
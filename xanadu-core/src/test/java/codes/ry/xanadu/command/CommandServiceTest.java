@@ -0,0 +1,100 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class CommandServiceTest {
+  @Test
+  void findsProvidersByNameInPriorityOrder() {
+    TestProvider list = new TestProvider(Set.of("ls"), false);
+    TestProvider macros = new TestProvider(Set.of("def"), true);
+    TestProvider other = new TestProvider(Set.of("ls", "cat"), false);
+    TestProvider unnamed = new TestProvider(Set.of(), false);
+    CommandService service = new CommandService(List.of(list, macros, other, unnamed));
+
+    assertSame(list, ran(service, "ls"));
+    assertSame(list, ran(service, "LS"));
+    assertSame(other, ran(service, "cat"));
+    assertFalse(service.find(input("rm")).isPresent());
+
+    // Dynamic and unnamed providers are asked about every name, in their place in the order.
+    macros.names.add("cat");
+    assertSame(macros, ran(service, "cat"));
+    unnamed.names.add("rm");
+    assertSame(unnamed, ran(service, "rm"));
+    assertEquals(Set.of("cat", "def", "ls", "rm"), service.commandNames());
+
+    CommandService reordered = service.enable(other);
+    assertSame(other, ran(reordered, "ls"));
+    assertSame(other, reordered.providerFor("cat"));
+    CommandService withoutList = service.disable(list);
+    assertSame(other, ran(withoutList, "ls"));
+    assertSame(macros, service.disable(other).providerFor("cat"));
+    assertNull(service.providerFor("mv"));
+  }
+
+  // The provider whose command ran for the name.
+  private static TestProvider ran(CommandService service, String name) {
+    CommandContext context =
+        new CommandContext(
+            new PrintWriter(new StringWriter()),
+            Style.box(),
+            RenderService.defaults(),
+            service,
+            80,
+            24);
+    service.find(input(name)).orElseThrow().execute(context);
+    return TestProvider.last;
+  }
+
+  private static CommandInput input(String name) {
+    return new CommandInput(name, name, List.of());
+  }
+
+  private static final class TestProvider implements CommandProvider {
+    private final Set<String> names;
+    private final boolean dynamic;
+    private static TestProvider last;
+    private final Command command =
+        context -> {
+          last = this;
+          return CommandResult.SUCCESS;
+        };
+
+    private TestProvider(Set<String> names, boolean dynamic) {
+      this.names = new HashSet<>(names);
+      this.dynamic = dynamic;
+    }
+
+    @Override
+    public boolean supports(CommandInput input) {
+      return names.stream().anyMatch(name -> name.equalsIgnoreCase(input.name));
+    }
+
+    @Override
+    public Command commandFor(CommandInput input) {
+      return command;
+    }
+
+    @Override
+    public Set<String> commandNames() {
+      return Set.copyOf(names);
+    }
+
+    @Override
+    public boolean dynamicNames() {
+      return dynamic;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ContextStateTest {
+  private static final ContextKey<Integer> COUNT = ContextKey.of("count", Integer.class);
+  private static final ContextKey<String> MODE = ContextKey.local("mode", String.class);
+
+  private final CommandContext context =
+      new CommandContext(
+          new PrintWriter(new StringWriter()),
+          Style.box(),
+          RenderService.defaults(),
+          new CommandService(List.of()),
+          80,
+          24);
+
+  @Test
+  void sharedKeysAreSeenByEveryFork() {
+    CommandContext fork = context.fork(new PrintWriter(new StringWriter()));
+    fork.put(COUNT, 3);
+    assertEquals(3, (int) context.get(COUNT));
+    context.remove(COUNT);
+    assertNull(fork.get(COUNT));
+    assertEquals(3, (int) context.computeIfAbsent(COUNT, () -> 3));
+    assertEquals(3, context.get("count"));
+  }
+
+  @Test
+  void closeRunsEveryForksHooksOnceLatestFirst() {
+    List<String> closed = new ArrayList<>();
+    context.onClose(() -> closed.add("root"));
+    context.fork(new PrintWriter(new StringWriter())).onClose(() -> closed.add("fork"));
+    context.close();
+    context.close();
+    assertEquals(List.of("fork", "root"), closed);
+  }
+
+  @Test
+  void localKeysOverlayTheParent() {
+    context.put(MODE, "parent");
+    CommandContext fork = context.fork(new PrintWriter(new StringWriter()));
+    assertEquals("parent", fork.get(MODE));
+
+    fork.put(MODE, "fork");
+    assertEquals("fork", fork.get(MODE));
+    assertEquals("parent", context.get(MODE));
+
+    fork.remove(MODE);
+    assertNull(fork.get(MODE));
+    assertEquals("parent", context.get(MODE));
+  }
+
+  @Test
+  void computeIsAtomicAcrossForks() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      CommandContext fork = context.fork(new PrintWriter(new StringWriter()));
+      threads.add(
+          Threads.start(
+              "count",
+              () -> {
+                for (int i = 0; i < 1000; i++) {
+                  fork.compute(COUNT, n -> n == null ? 1 : n + 1);
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(8000, (int) context.get(COUNT));
+  }
+}
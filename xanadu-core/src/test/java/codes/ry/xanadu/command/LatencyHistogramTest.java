@@ -0,0 +1,67 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+  @Test
+  void bucketsCoverEveryValueWithinAnEighth() {
+    int previous = -1;
+    for (long value = 0; value < 1 << 16; value++) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertTrue(bucket == previous || bucket == previous + 1, "value " + value);
+      assertTrue(value <= LatencyHistogram.highest(bucket));
+      assertTrue(LatencyHistogram.highest(bucket) - value <= value / 8, "value " + value);
+      previous = bucket;
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.highest(LatencyHistogram.bucket(Long.MAX_VALUE)));
+  }
+
+  @Test
+  void reportsPercentilesAndMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.percentile(0.5));
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value * 1000);
+    }
+    assertEquals(1000, histogram.count());
+    assertEquals(1_000_000, histogram.max());
+    assertWithin(500_000, histogram.percentile(0.50));
+    assertWithin(990_000, histogram.percentile(0.99));
+    assertEquals(1_000_000, histogram.percentile(1.0));
+
+    histogram.reset();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.max());
+  }
+
+  @Test
+  void recordsFromManyThreads() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long offset = t;
+      threads.add(
+          Threads.start(
+              "record",
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  histogram.record(i + offset);
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80_000, histogram.count());
+    assertEquals(10_006, histogram.max());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected + expected / 8, "got " + actual);
+  }
+}
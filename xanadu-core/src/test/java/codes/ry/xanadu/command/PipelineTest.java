@@ -0,0 +1,203 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class PipelineTest {
+  private final AtomicInteger emitted = new AtomicInteger();
+  private final List<Object> received = new ArrayList<>();
+  private final StringWriter output = new StringWriter();
+  private final CountDownLatch blocked = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicBoolean producerCancelled = new AtomicBoolean();
+  private final CommandContext context =
+      new CommandContext(
+          new PrintWriter(output),
+          Style.box(),
+          RenderService.defaults(),
+          new CommandService(List.of(new Commands())),
+          80,
+          24);
+
+  @Test
+  void parsesStagesAndLeavesQuotedAndDoubledBarsAlone() {
+    CommandInput input = CommandParser.parse("select a || b from t where c = '|' | spark 3");
+    assertEquals("select", input.name);
+    assertEquals("select a || b from t where c = '|' ", input.raw);
+    assertEquals("spark", input.next.name);
+    assertEquals(List.of("3"), input.next.args);
+    assertNull(input.next.next);
+
+    assertNull(CommandParser.parse("a \\| b").next);
+    assertEquals(List.of("|"), CommandParser.parse("echo |").args);
+  }
+
+  @Test
+  void barsWithoutSpaceAroundThemStayInTheStatement() {
+    CommandInput input = CommandParser.parse("select a|bar from t");
+    assertNull(input.next);
+    assertEquals(List.of("a|bar", "from", "t"), input.args);
+    assertNull(CommandParser.parse("select a |bar from t").next);
+  }
+
+  @Test
+  void definitionsKeepTheirBarsForTheMacroBody() {
+    CommandInput input = CommandParser.parse("def foo select 1 | spark end");
+    assertNull(input.next);
+    assertEquals("def", input.name);
+    assertEquals(List.of("foo", "select", "1", "|", "spark", "end"), input.args);
+    assertNull(CommandParser.parse("DEF foo count 3 | sum").next);
+    // Only the def command itself; a name that starts with it is still split.
+    assertEquals("sum", CommandParser.parse("define 3 | sum").next.name);
+  }
+
+  @Test
+  void trailingAmpersandRunsTheLineInTheBackground() {
+    CommandInput input = CommandParser.parse("count 3 | sum & ");
+    assertTrue(input.background);
+    assertEquals("count 3 | sum", input.line());
+    assertFalse(CommandParser.parse("select 1 where a && b").background);
+    assertFalse(CommandParser.parse("echo '&'").background);
+    assertEquals(List.of("&"), CommandParser.parse("echo \\&").args);
+  }
+
+  @Test
+  void streamsRecordsToTheLastStage() {
+    assertEquals(CommandResult.SUCCESS, run("count 1000 | twice | sum"));
+    assertEquals(List.of(1000L * 999), received);
+  }
+
+  @Test
+  void upstreamStopsWhenDownstreamStopsReading() {
+    assertEquals(CommandResult.SUCCESS, run("count 1000000 | take 3"));
+    assertEquals(List.of(0, 1, 2), received);
+    // The producer may run one pipe's worth ahead of the consumer, never to the end.
+    assertTrue(emitted.get() <= 3 + Pipe.DEFAULT_CAPACITY + 1, "emitted " + emitted.get());
+  }
+
+  @Test
+  void upstreamFailuresReachTheCaller() {
+    RuntimeException error = assertThrows(RuntimeException.class, () -> run("boom | sum"));
+    assertTrue(error.getMessage().contains("boom"), error.getMessage());
+  }
+
+  @Test
+  void freeTextWithABarRunsAsOneCommand() {
+    assertEquals(CommandResult.SUCCESS, run("note explain a | b"));
+    assertEquals(List.of("explain a | b"), received);
+    // The first stage alone resolves, but the stage after it names no command.
+    assertEquals(CommandResult.SUCCESS, run("echo a | b"));
+    assertEquals("a | b", received.get(received.size() - 1));
+    assertFalse(output.toString().contains("Unknown command"));
+
+    // A backslash in a SQL string does not escape its closing quote.
+    CommandInput input = CommandParser.parse("select 'C:\\' | spark");
+    assertEquals("select 'C:\\' ", input.raw);
+    assertEquals("spark", input.next.name);
+  }
+
+  @Test
+  void unknownStagesRunNothing() {
+    assertEquals(CommandResult.FAILURE, run("count 5 | nope"));
+    assertEquals(0, emitted.get());
+    assertTrue(output.toString().contains("Unknown command: nope"));
+  }
+
+  @Test
+  void cancellingThePipelineReachesABlockedProducer() throws InterruptedException {
+    Thread runner = Threads.start("pipeline", () -> run("block | sum"));
+    try {
+      assertTrue(blocked.await(5, TimeUnit.SECONDS));
+      // As Ctrl-C does: only the caller's context is cancelled.
+      context.cancelCurrentCommand();
+      runner.join(5000);
+      assertFalse(runner.isAlive());
+      assertTrue(producerCancelled.get());
+      assertEquals(List.of(1L), received);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private CommandResult run(String line) {
+    return context.commandService().find(CommandParser.parse(line)).orElseThrow().execute(context);
+  }
+
+  public final class Commands extends ReflectiveCommandProvider {
+    public void count(CommandContext context, int n) {
+      for (int i = 0; i < n; i++) {
+        emitted.incrementAndGet();
+        if (!context.emit(i)) {
+          return;
+        }
+      }
+    }
+
+    // Emits one record, then waits in a call that polls nothing until its cancel hook runs.
+    public void block(CommandContext context) {
+      context.onCancel(release::countDown);
+      context.emit(1);
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      producerCancelled.set(context.consumeCancel());
+    }
+
+    public void twice(CommandContext context) {
+      for (Object record : context.upstream()) {
+        if (!context.emit(2 * ((Number) record).intValue())) {
+          return;
+        }
+      }
+    }
+
+    public void sum(CommandContext context) {
+      long sum = 0;
+      for (Object record : context.upstream()) {
+        sum += ((Number) record).longValue();
+      }
+      received.add(sum);
+    }
+
+    public void take(CommandContext context, int n) {
+      for (Object record : context.upstream()) {
+        if (received.size() == n) {
+          return;
+        }
+        received.add(record);
+      }
+    }
+
+    public void boom(CommandContext context) {
+      throw new IllegalStateException("boom");
+    }
+
+    public void echo(CommandContext context, String arg) {}
+
+    public void echo(CommandContext context, String a, String b, String c) {
+      received.add(String.join(" ", a, b, c));
+    }
+
+    public void note(CommandContext context, String a, String b, String c, String d) {
+      received.add(String.join(" ", a, b, c, d));
+    }
+  }
+}
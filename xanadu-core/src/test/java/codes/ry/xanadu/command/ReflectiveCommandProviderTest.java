@@ -0,0 +1,141 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+class ReflectiveCommandProviderTest {
+  @Test
+  void choosesOverloadsByArityAndByWhichArgumentsParse() {
+    Picks provider = new Picks();
+    assertEquals("none", run(provider, "pick"));
+    assertEquals("string x", run(provider, "pick", "x"));
+    // Declared after the String overload, but tried first since it is stricter.
+    assertEquals("int 5", run(provider, "pick", "5"));
+    assertEquals("pair 5 x", run(provider, "pick", "5", "x"));
+    assertEquals("bool true", run(provider, "flag", "TRUE"));
+    assertFalse(provider.supports(input("flag", "maybe")));
+    assertFalse(provider.supports(input("pick", "a", "b", "c")));
+    assertFalse(provider.supports(input("missing")));
+  }
+
+  @Test
+  void runsStaticCommandMethods() {
+    Picks provider = new Picks();
+    assertEquals("static hi", run(provider, "shout", "hi"));
+    CommandContext context = context(new StringWriter());
+    assertEquals(
+        CommandResult.SUCCESS, provider.commandFor(input("positive", "3")).execute(context));
+    assertEquals(
+        CommandResult.FAILURE, provider.commandFor(input("positive", "-3")).execute(context));
+  }
+
+  @Test
+  void runsMethodsOfNonPublicClasses() {
+    Hidden provider = new Hidden();
+    assertTrue(provider.supports(input("hello")));
+    assertEquals("hidden", run(provider, "hello"));
+  }
+
+  @Test
+  void runsOneResolvedCommandConcurrently() throws InterruptedException {
+    Command command = new Picks().commandFor(input("pick", "x"));
+    int threads = 16;
+    List<StringWriter> outputs = new ArrayList<>();
+    List<Thread> runners = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < threads; i++) {
+      StringWriter output = new StringWriter();
+      outputs.add(output);
+      CommandContext context = context(output);
+      runners.add(
+          Threads.start(
+              "runner",
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int k = 0; k < 100; k++) {
+                  command.execute(context);
+                }
+              }));
+    }
+    start.countDown();
+    for (Thread runner : runners) {
+      runner.join();
+    }
+    // Every run wrote to the context it was given.
+    for (StringWriter output : outputs) {
+      assertEquals("string x\n".repeat(100), output.toString());
+    }
+  }
+
+  private static String run(CommandProvider provider, String name, String... args) {
+    StringWriter output = new StringWriter();
+    CommandContext context = context(output);
+    provider.commandFor(input(name, args)).execute(context);
+    context.out.flush();
+    return output.toString().trim();
+  }
+
+  private static CommandContext context(StringWriter output) {
+    return new CommandContext(
+        new PrintWriter(output, true),
+        Style.box(),
+        RenderService.defaults(),
+        new CommandService(List.of()),
+        80,
+        24);
+  }
+
+  private static CommandInput input(String name, String... args) {
+    return new CommandInput(name, name, List.of(args));
+  }
+
+  public static final class Picks extends ReflectiveCommandProvider {
+    public void pick(CommandContext context) {
+      context.out.println("none");
+    }
+
+    public void pick(CommandContext context, String text) {
+      context.out.println("string " + text);
+    }
+
+    public void pick(CommandContext context, int number) {
+      context.out.println("int " + number);
+    }
+
+    public void pick(CommandContext context, int number, String text) {
+      context.out.println("pair " + number + " " + text);
+    }
+
+    public void flag(CommandContext context, boolean value) {
+      context.out.println("bool " + value);
+    }
+
+    public static void shout(CommandContext context, String text) {
+      context.out.println("static " + text);
+    }
+
+    public static boolean positive(int number) {
+      return number > 0;
+    }
+  }
+
+  private static final class Hidden extends ReflectiveCommandProvider {
+    public void hello(CommandContext context) {
+      context.out.println("hidden");
+    }
+  }
+}
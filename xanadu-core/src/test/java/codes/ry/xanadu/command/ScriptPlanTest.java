@@ -0,0 +1,114 @@
+package codes.ry.xanadu.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.render.RenderService;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ScriptPlanTest {
+  private final List<String> said = new ArrayList<>();
+  private final Say say = new Say();
+  private final MacroCommands macros = new MacroCommands();
+  private final StringWriter output = new StringWriter();
+  private final CommandContext context =
+      new CommandContext(
+          new PrintWriter(output),
+          Style.box(),
+          RenderService.defaults(),
+          new CommandService(List.of(macros, say)),
+          80,
+          24);
+
+  @Test
+  void macroCallsReuseParsedAndResolvedLines() {
+    assertEquals(CommandResult.SUCCESS, run("def greet say hello $1 end"));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(CommandResult.SUCCESS, run("greet world"));
+    }
+    assertEquals(100, said.size());
+    assertEquals("hello world", said.get(99));
+    // The macro line is parsed and resolved once per distinct binding.
+    assertEquals(1, say.resolved);
+
+    run("greet there");
+    assertEquals("hello there", said.get(100));
+    assertEquals(2, say.resolved);
+  }
+
+  @Test
+  void cachedResolutionsFollowMacroDefinitions() {
+    ScriptPlan plan = ScriptPlan.script(List.of("hi"));
+    say.names.add("hi");
+    plan.run(context);
+    run("def hi say shadowed end");
+    plan.run(context);
+    run("undef hi");
+    plan.run(context);
+    assertEquals(List.of("hi", "shadowed", "hi"), said);
+  }
+
+  @Test
+  void macrosRequireTheirHighestParameter() {
+    run("def pair say $2 $1 end");
+    assertEquals(CommandResult.FAILURE, run("pair a"));
+    assertTrue(output.toString().contains("Macro requires at least 2 arguments."));
+    run("pair a b");
+    assertEquals(List.of("b a"), said);
+  }
+
+  @Test
+  void scriptsStreamFromFiles() throws Exception {
+    Path script = Files.createTempFile("xanadu-script", ".xan");
+    try {
+      Files.write(script, List.of("say one", "", "def two", "say two", "end", "two", "nope"));
+      assertFalse(ScriptRunner.run(context, script));
+      assertEquals(List.of("one", "two"), said);
+      assertTrue(output.toString().contains("Unknown command: nope"));
+    } finally {
+      Files.delete(script);
+    }
+  }
+
+  private CommandResult run(String line) {
+    return ScriptPlan.executeLine(context, line);
+  }
+
+  private final class Say implements CommandProvider {
+    private final List<String> names = new ArrayList<>(List.of("say"));
+    private int resolved;
+
+    @Override
+    public boolean supports(CommandInput input) {
+      return names.contains(input.name);
+    }
+
+    @Override
+    public Command commandFor(CommandInput input) {
+      resolved++;
+      String text = input.name.equals("say") ? String.join(" ", input.args) : input.name;
+      return ctx -> {
+        said.add(text);
+        return CommandResult.SUCCESS;
+      };
+    }
+
+    @Override
+    public java.util.Set<String> commandNames() {
+      return java.util.Set.copyOf(names);
+    }
+
+    @Override
+    public boolean dynamicNames() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package codes.ry.xanadu.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Style;
+import codes.ry.xanadu.StyledImages;
+import codes.ry.xanadu.TextStyle;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class FrameEncoderTest {
+  @Test
+  void encodesSameTextAsPrintWriterDump() {
+    Style style = Style.box();
+    Frame title = style.frame(1, 8, StyledImages.withStyle(Image.text("héllo"), TextStyle.BOLD));
+    Frame body = style.text(8, "€ 😀 ░▒ ok");
+    Frame frame = title.border().appendVertical(body.border());
+    RenderContext context = new RenderContext(style, 0, 0, RenderService.defaults(), false);
+
+    StringWriter expected = new StringWriter();
+    PrintWriter writer = new PrintWriter(expected);
+    context.dump(frame, writer);
+    writer.flush();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FrameEncoder encoder = new FrameEncoder(Channels.newChannel(bytes));
+    context.dump(frame, encoder);
+    assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8));
+
+    bytes.reset();
+    context.dump(frame, encoder);
+    assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,107 @@
+package codes.ry.xanadu.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Style;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IterableRendererProviderTest {
+  @Test
+  void nestedListsShareOneTree() {
+    RenderContext context = new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false);
+    Frame frame = render(List.of("a", List.of("b", "c"), List.of(), "d"), context);
+    assertEquals(String.join("\n", "├─a", "├─├─b", "│ └─c", "├─", "└─d"), rows(frame));
+  }
+
+  @Test
+  void stopsPullingItemsOnceHeightIsUsed() {
+    RenderContext context = new RenderContext(Style.box(), 20, 4, RenderService.defaults(), true);
+    List<Integer> huge =
+        new AbstractList<>() {
+          @Override
+          public Integer get(int index) {
+            return index;
+          }
+
+          @Override
+          public int size() {
+            return 10_000_000;
+          }
+        };
+    assertEquals(
+        String.join("\n", "├─0", "├─1", "├─2", "… 9999997 more"), rows(render(huge, context)));
+
+    Iterable<Integer> endless =
+        () ->
+            new Iterator<>() {
+              private int next;
+
+              @Override
+              public boolean hasNext() {
+                return true;
+              }
+
+              @Override
+              public Integer next() {
+                return next++;
+              }
+            };
+    Frame frame = render(endless, context);
+    assertEquals(4, frame.height);
+    assertEquals(String.join("\n", "├─0", "├─1", "├─2", "…"), rows(frame));
+
+    // The lines cut from a tall item must not show through the tail row.
+    frame = render(List.of("a\nb", "c\nxyz", "e"), context);
+    assertEquals(String.join("\n", "├─a", "│ b", "├─c", "… 1 more"), rows(frame));
+  }
+
+  @Test
+  void stopsAtTheCellBudget() {
+    RenderContext context =
+        new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false).withBudget(5, 0);
+    Frame frame = render(List.of("ab", "cd", "efgh", "ij"), context);
+    // The cut-off leaf carries the only marker.
+    assertEquals(String.join("\n", "├─ab", "├─cd", "├─e … (render truncated)"), rows(frame));
+
+    frame =
+        render(
+            List.of("ab", "cd", "e", "fg"),
+            new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false)
+                .withBudget(5, 0));
+    assertEquals(
+        String.join("\n", "├─ab", "├─cd", "├─e", "… (render truncated)"), rows(frame));
+
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    Frame tall = Style.box().frame(10, 2, Image.flood('x'));
+    new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false)
+        .withBudget(6, 0)
+        .dump(tall, writer);
+    writer.flush();
+    assertEquals("\nxx\nxx\nxx\n" + RenderContext.TRUNCATED + "\n", out.toString());
+  }
+
+  private static Frame render(Object value, RenderContext context) {
+    return (Frame) context.service.render(value, context);
+  }
+
+  private static String rows(Frame frame) {
+    StringBuilder out = new StringBuilder();
+    char[] row = new char[frame.width];
+    for (int i = 0; i < frame.height; i++) {
+      frame.readRow(i, 0, frame.width, row, 0);
+      if (i > 0) {
+        out.append('\n');
+      }
+      out.append(new String(row).stripTrailing());
+    }
+    return out.toString();
+  }
+}
@@ -0,0 +1,73 @@
+package codes.ry.xanadu.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Rect;
+import codes.ry.xanadu.Style;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RenderCacheTest {
+  private final RenderContext context =
+      new RenderContext(Style.box(), 80, 24, RenderService.defaults(), true);
+
+  @Test
+  void storesValuesOnTheirSecondMiss() {
+    RenderCache cache = new RenderCache(1024);
+    assertFalse(cache.admit("hello", context));
+    assertTrue(cache.admit("hello", context));
+    cache.put("hello", context, new byte[10]);
+    assertEquals(10, cache.get("hello", context).length);
+    // The key's characters count toward the bound along with the output.
+    assertEquals(10 + 2 * "hello".length(), cache.sizeBytes());
+  }
+
+  @Test
+  void skipsMutableValues() {
+    RenderCache cache = new RenderCache(1024);
+    List<String> value = List.of("a");
+    assertFalse(cache.admit(value, context));
+    assertFalse(cache.admit(value, context));
+    cache.put(value, context, new byte[10]);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void keysFramesByTheirDrawRectSize() {
+    RenderCache cache = new RenderCache(1024);
+    Frame frame = Style.box().text("hello");
+    Rect rect = frame.drawRect;
+    Frame wider =
+        frame.withDrawRect(new Rect(rect.top, rect.left, rect.height + 1, rect.width + 2));
+    cache.admit(frame, context);
+    cache.admit(frame, context);
+    cache.put(frame, context, new byte[10]);
+    assertEquals(10, cache.get(frame, context).length);
+    // Same image and origin, but more cells drawn; the smaller frame's bytes don't fit it.
+    assertEquals(null, cache.get(wider, context));
+  }
+
+  @Test
+  void doesNotKeepImagesAlive() throws InterruptedException {
+    RenderCache cache = new RenderCache(1024);
+    Image image = Image.text("gone");
+    WeakReference<Image> ref = new WeakReference<>(image);
+    cache.admit(image, context);
+    cache.put(image, context, new byte[10]);
+    assertEquals(1, cache.size());
+    image = null;
+    for (int i = 0; i < 50 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertEquals(null, ref.get());
+    cache.get("anything", context);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.sizeBytes());
+  }
+}
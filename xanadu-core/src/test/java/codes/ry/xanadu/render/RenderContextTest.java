@@ -0,0 +1,47 @@
+package codes.ry.xanadu.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Image;
+import codes.ry.xanadu.Style;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+class RenderContextTest {
+  private final RenderContext context =
+      new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false, 1);
+
+  @Test
+  void readsImagesThatMayChangeOnTheRenderingThread() {
+    Set<Thread> readers = ConcurrentHashMap.newKeySet();
+    Image live =
+        (i, j) -> {
+          readers.add(Thread.currentThread());
+          return 'x';
+        };
+    Frame frame = Style.box().frame(200, 200, live);
+    assertFalse(frame.immutable());
+    context.dump(frame, new PrintWriter(Writer.nullWriter()));
+    assertEquals(Set.of(Thread.currentThread()), readers);
+  }
+
+  @Test
+  void materializedFramesRenderTheSameInParallel() {
+    Frame frame = Style.box().frame(200, 200, (i, j) -> (char) ('a' + (i + j) % 26));
+    Frame materialized = frame.materialize();
+    assertTrue(materialized.immutable());
+    StringWriter serial = new StringWriter();
+    StringWriter parallel = new StringWriter();
+    new RenderContext(Style.box(), 0, 0, RenderService.defaults(), false, 0)
+        .dump(frame, new PrintWriter(serial, true));
+    context.dump(materialized, new PrintWriter(parallel, true));
+    assertEquals(serial.toString(), parallel.toString());
+  }
+}
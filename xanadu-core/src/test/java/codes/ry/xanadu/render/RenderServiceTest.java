@@ -0,0 +1,85 @@
+package codes.ry.xanadu.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import codes.ry.xanadu.Frame;
+import codes.ry.xanadu.Style;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RenderServiceTest {
+  @Test
+  void resolvesProvidersByTypeAndRespectsEnableDisable() {
+    RendererProvider numbers = provider(Number.class, "number");
+    RendererProvider evens = untyped("even");
+    RenderService service =
+        new RenderService(List.of(evens, numbers, new ToStringRendererProvider()));
+    RenderContext context = new RenderContext(Style.box(), 0, 0, service, false);
+
+    assertEquals("even", render(service, 4, context));
+    assertEquals("number", render(service, 3, context));
+    assertEquals("number", render(service, 3L, context));
+    assertEquals("text", render(service, "text", context));
+    assertEquals("null", render(service, null, context));
+
+    RenderService withoutNumbers = service.disable(numbers);
+    assertEquals("3", render(withoutNumbers, 3, context));
+    assertEquals("3", render(withoutNumbers.enable(numbers), 3, context));
+    assertEquals("number", render(service.enable(numbers), 4, context));
+  }
+
+  @Test
+  void clipFramesCopyKeepsTheRestOfTheContext() {
+    RenderContext context =
+        new RenderContext(Style.box(), 80, 24, RenderService.defaults(), true, 7).withBudget(5, 0);
+    RenderContext unclipped = context.withClipFrames(false);
+    assertEquals(false, unclipped.clipFrames);
+    assertEquals(80, unclipped.maxWidth);
+    assertEquals(24, unclipped.maxHeight);
+    assertEquals(7, unclipped.parallelCells);
+    assertEquals(5, unclipped.cellBudget);
+    // The copy draws on the same budget.
+    unclipped.charge(4);
+    assertEquals(1, context.remainingCells());
+  }
+
+  private static String render(RenderService service, Object value, RenderContext context) {
+    Frame frame = (Frame) service.render(value, context);
+    char[] row = new char[frame.width];
+    frame.readRow(0, 0, frame.width, row, 0);
+    return new String(row).trim();
+  }
+
+  private static RendererProvider provider(Class<?> type, String label) {
+    return new RendererProvider() {
+      @Override
+      public boolean supports(Object value) {
+        return type.isInstance(value);
+      }
+
+      @Override
+      public Class<?> supportedType() {
+        return type;
+      }
+
+      @Override
+      public Renderer renderer() {
+        return (value, context) -> context.style.text(label);
+      }
+    };
+  }
+
+  private static RendererProvider untyped(String label) {
+    return new RendererProvider() {
+      @Override
+      public boolean supports(Object value) {
+        return value instanceof Integer && (Integer) value % 2 == 0;
+      }
+
+      @Override
+      public Renderer renderer() {
+        return (value, context) -> context.style.text(label);
+      }
+    };
+  }
+}
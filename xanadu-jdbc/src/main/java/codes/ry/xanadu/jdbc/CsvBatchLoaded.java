@@ -0,0 +1,21 @@
+package codes.ry.xanadu.jdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for one batch of CSV rows, timed from reading its first row to insert. */
+@Name("codes.ry.xanadu.CsvBatchLoaded")
+@Label("CSV Batch Loaded")
+@Category({"Xanadu", "JDBC"})
+@Description("A batch of CSV rows inserted with the bytes read from the file for it")
+final class CsvBatchLoaded extends jdk.jfr.Event {
+  @Label("Rows")
+  int rows;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+}
@@ -4,10 +4,14 @@ import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
 import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandResult;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PushbackReader;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -112,7 +116,10 @@ public final class JdbcCsvCommands implements CommandProvider {
     }
     try {
       List<String> columns = options.columns;
-      try (Reader fileReader = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8);
+      // Read through the channel so its position tells how many bytes each batch took.
+      try (FileChannel channel = FileChannel.open(csvPath);
+          Reader fileReader =
+              new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
           PushbackReader reader = new PushbackReader(fileReader, 1)) {
         if (options.header) {
           List<String> header = readRecord(reader, options.delimiter);
@@ -136,13 +143,17 @@ public final class JdbcCsvCommands implements CommandProvider {
           return;
         }
         String sql = buildInsertSql(table, columns);
+        long batchStart = channel.position();
         boolean restoreAutoCommit = connection.getAutoCommit();
         if (restoreAutoCommit) {
           connection.setAutoCommit(false);
         }
         long total = 0;
         int batchCount = 0;
+        CsvBatchLoaded batch = new CsvBatchLoaded();
+        batch.begin();
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+          JdbcSession.cancelOnKill(context, stmt);
           List<String> row = readRecord(reader, options.delimiter);
           while (row != null) {
             if (isBlankRow(row)) {
@@ -163,28 +174,44 @@ public final class JdbcCsvCommands implements CommandProvider {
             batchCount++;
             total++;
             if (batchCount >= options.batchSize) {
-              stmt.executeBatch();
+              batchStart = executeBatch(stmt, batch, batchCount, channel, batchStart);
+              batch = new CsvBatchLoaded();
+              batch.begin();
               batchCount = 0;
+              if (context.consumeCancel()) {
+                cancelled(context, connection, restoreAutoCommit, total);
+                return;
+              }
             }
             row = readRecord(reader, options.delimiter);
           }
           if (batchCount > 0) {
-            stmt.executeBatch();
+            executeBatch(stmt, batch, batchCount, channel, batchStart);
           }
           if (restoreAutoCommit) {
             connection.commit();
             connection.setAutoCommit(true);
           }
-        } catch (SQLException e) {
+        } catch (SQLException | IOException | RuntimeException e) {
+          if (e instanceof ClosedByInterruptException || context.consumeCancel()) {
+            // The kill interrupted the read or cancelled the statement mid-batch.
+            cancelled(context, connection, restoreAutoCommit, -1);
+            return;
+          }
           if (restoreAutoCommit) {
             connection.rollback();
             connection.setAutoCommit(true);
           }
           throw e;
+        } finally {
+          context.onCancel(null);
         }
         context.out.println("Loaded " + total + " rows into " + table + ".");
         context.out.flush();
       }
+    } catch (ClosedByInterruptException e) {
+      // Killed before any row was sent.
+      context.warn("Load cancelled; no rows were loaded.");
     } catch (IOException | SQLException e) {
       throw new RuntimeException("CSV load failed: " + e.getMessage(), e);
     }
@@ -468,6 +495,40 @@ public final class JdbcCsvCommands implements CommandProvider {
     return "\"" + escaped + "\"";
   }
 
+  // Undoes the load when it runs in its own transaction; otherwise the caller's transaction keeps
+  // the batches sent so far, loaded rows in all, or an unknown count when loaded is negative.
+  private static void cancelled(
+      CommandContext context, Connection connection, boolean restoreAutoCommit, long loaded)
+      throws SQLException {
+    // Clear the kill's interrupt so it does not also abort the rollback.
+    Thread.interrupted();
+    if (restoreAutoCommit) {
+      connection.rollback();
+      connection.setAutoCommit(true);
+      context.warn("Load cancelled; no rows were loaded.");
+    } else if (loaded >= 0) {
+      context.warn("Load cancelled after " + loaded + " rows.");
+    } else {
+      context.warn("Load cancelled.");
+    }
+  }
+
+  // Runs the batch and commits its event, begun before its first row was read; returns the file
+  // position the next batch starts at. Bytes are counted as the reader buffers them, so a batch's
+  // share is approximate.
+  private static long executeBatch(
+      PreparedStatement stmt, CsvBatchLoaded event, int rows, FileChannel channel, long batchStart)
+      throws SQLException, IOException {
+    stmt.executeBatch();
+    long position = channel.position();
+    if (event.shouldCommit()) {
+      event.rows = rows;
+      event.bytes = position - batchStart;
+      event.commit();
+    }
+    return position;
+  }
+
   private List<String> readRecord(PushbackReader reader, char delimiter) throws IOException {
     List<String> fields = new ArrayList<>();
     StringBuilder field = new StringBuilder();
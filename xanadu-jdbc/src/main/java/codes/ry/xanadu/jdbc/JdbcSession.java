@@ -1,18 +1,43 @@
 package codes.ry.xanadu.jdbc;
 
 import codes.ry.xanadu.command.CommandContext;
+import codes.ry.xanadu.command.ContextKey;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 final class JdbcSession {
-  static final String CONNECTION_KEY = "jdbc.connection";
+  static final ContextKey<Connection> CONNECTION =
+      ContextKey.of("jdbc.connection", Connection.class);
 
   private JdbcSession() {}
 
   static Connection getConnection(CommandContext context) {
-    return context.get(CONNECTION_KEY, Connection.class);
+    return context.get(CONNECTION);
   }
 
+  // The connection is closed when the session ends.
   static void setConnection(CommandContext context, Connection connection) {
-    context.put(CONNECTION_KEY, connection);
+    context.put(CONNECTION, connection);
+    context.onClose(
+        () -> {
+          try {
+            connection.close();
+          } catch (SQLException ignored) {
+            // Nothing is left to report to.
+          }
+        });
+  }
+
+  // Lets a kill or interrupt abort the statement while the driver is blocked in it.
+  static void cancelOnKill(CommandContext context, Statement stmt) {
+    context.onCancel(
+        () -> {
+          try {
+            stmt.cancel();
+          } catch (SQLException ignored) {
+            // Closed already, or the driver cannot cancel; the command polls the flag too.
+          }
+        });
   }
 }
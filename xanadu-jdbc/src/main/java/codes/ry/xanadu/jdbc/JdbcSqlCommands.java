@@ -126,24 +126,24 @@ public final class JdbcSqlCommands implements CommandProvider {
       context.error("Not connected.");
       return;
     }
+    SqlExecuted event = new SqlExecuted();
+    event.begin();
     try (Statement stmt = connection.createStatement()) {
+      JdbcSession.cancelOnKill(context, stmt);
+      event.fetchSize = stmt.getFetchSize();
       if (DDL_COMMAND.equals(name)) {
-        int count = stmt.executeUpdate(statement);
-        context.out.println("Updated " + count + " rows.");
-        context.out.flush();
+        event.rows = updated(context, stmt.executeUpdate(statement));
       } else if (SQL_COMMAND.equals(name)) {
         boolean isQuery = isLikelyQuery(statement);
         boolean executed = false;
         if (isQuery) {
           try (ResultSet rs = stmt.executeQuery(statement)) {
-            new JdbcTableRenderer(context).render(rs);
+            event.rows = output(context, rs);
             executed = true;
           }
         } else {
           try {
-            int count = stmt.executeUpdate(statement);
-            context.out.println("Updated " + count + " rows.");
-            context.out.flush();
+            event.rows = updated(context, stmt.executeUpdate(statement));
             executed = true;
           } catch (SQLException ignored) {
             // Fall back to execute() below.
@@ -154,27 +154,66 @@ public final class JdbcSqlCommands implements CommandProvider {
           if (hasResultSet) {
             try (ResultSet rs = stmt.getResultSet()) {
               if (rs != null) {
-                new JdbcTableRenderer(context).render(rs);
+                event.rows = output(context, rs);
               }
             }
           } else {
-            int count = stmt.getUpdateCount();
-            context.out.println("Updated " + count + " rows.");
-            context.out.flush();
+            event.rows = updated(context, stmt.getUpdateCount());
           }
         }
       } else if (QUERY_COMMANDS.contains(name)) {
         try (ResultSet rs = stmt.executeQuery(statement)) {
-          new JdbcTableRenderer(context).render(rs);
+          event.rows = output(context, rs);
         }
       } else {
-        int count = stmt.executeUpdate(statement);
-        context.out.println("Updated " + count + " rows.");
-        context.out.flush();
+        event.rows = updated(context, stmt.executeUpdate(statement));
       }
     } catch (SQLException e) {
       throw new RuntimeException("SQL failed: " + e.getMessage(), e);
+    } finally {
+      context.onCancel(null);
+      if (event.shouldCommit()) {
+        event.kind = firstKeyword(statement).toUpperCase(Locale.ROOT);
+        event.commit();
+      }
+    }
+  }
+
+  private static int updated(CommandContext context, int count) {
+    context.out.println("Updated " + count + " rows.");
+    context.out.flush();
+    return count;
+  }
+
+  // Piped queries send their rows downstream instead of rendering a table: the value itself for
+  // single-column results, an unmodifiable list of column values otherwise. Returns the row count.
+  private long output(CommandContext context, ResultSet rs) throws SQLException {
+    if (!context.piped()) {
+      return new JdbcTableRenderer(context).render(rs);
+    }
+    int columns = rs.getMetaData().getColumnCount();
+    long count = 0;
+    while (rs.next()) {
+      if (context.consumeCancel()) {
+        context.warn("Query cancelled after " + count + " rows.");
+        return count;
+      }
+      count++;
+      Object record;
+      if (columns == 1) {
+        record = rs.getObject(1);
+      } else {
+        Object[] row = new Object[columns];
+        for (int i = 0; i < columns; i++) {
+          row[i] = rs.getObject(i + 1);
+        }
+        record = java.util.Collections.unmodifiableList(java.util.Arrays.asList(row));
+      }
+      if (!context.emit(record)) {
+        return count;
+      }
     }
+    return count;
   }
 
   private void startContinuation(CommandContext context, String name, String sql) {
@@ -218,24 +257,22 @@ public final class JdbcSqlCommands implements CommandProvider {
   }
 
   private boolean isLikelyQuery(String statement) {
+    return QUERY_STARTERS.contains(firstKeyword(statement));
+  }
+
+  // The statement's leading word, lower-cased, or "" when it does not start with one.
+  private static String firstKeyword(String statement) {
     if (statement == null) {
-      return false;
+      return "";
     }
     int i = 0;
     while (i < statement.length() && Character.isWhitespace(statement.charAt(i))) {
       i++;
     }
-    if (i >= statement.length()) {
-      return false;
-    }
     int start = i;
     while (i < statement.length() && Character.isLetter(statement.charAt(i))) {
       i++;
     }
-    if (start == i) {
-      return false;
-    }
-    String token = statement.substring(start, i).toLowerCase(Locale.ROOT);
-    return QUERY_STARTERS.contains(token);
+    return statement.substring(start, i).toLowerCase(Locale.ROOT);
   }
 }
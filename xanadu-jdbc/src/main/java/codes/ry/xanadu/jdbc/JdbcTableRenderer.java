@@ -20,7 +20,8 @@ final class JdbcTableRenderer {
     this.context = context;
   }
 
-  void render(ResultSet rs) throws SQLException {
+  // Returns the number of rows rendered.
+  long render(ResultSet rs) throws SQLException {
     ResultSetMetaData meta = rs.getMetaData();
     int cols = meta.getColumnCount();
     String[] names = new String[cols];
@@ -38,14 +39,23 @@ final class JdbcTableRenderer {
     List<Object[]> batch = new ArrayList<>();
     if (!rs.next()) {
       dumpBatch(names, widths, List.of());
-      return;
+      return 0;
     }
+    long count = 0;
     do {
+      if (context.consumeCancel()) {
+        if (!batch.isEmpty()) {
+          dumpBatch(names, widths, batch);
+        }
+        context.warn("Query cancelled after " + count + " rows.");
+        return count;
+      }
       Object[] row = new Object[cols];
       for (int i = 0; i < cols; i++) {
         row[i] = rs.getObject(i + 1);
       }
       batch.add(row);
+      count++;
       if (batch.size() >= fetchSize) {
         dumpBatch(names, widths, batch);
         batch.clear();
@@ -54,16 +64,17 @@ final class JdbcTableRenderer {
     if (!batch.isEmpty()) {
       dumpBatch(names, widths, batch);
     }
+    return count;
   }
 
   private void dumpBatch(String[] names, int[] widths, List<Object[]> rows) {
     List<Image[]> rendered = renderRows(rows);
     int[] computed = computeWidths(names, rendered, rows);
-    Frame headerBase = rowFrame(names, computed, true);
+    Frame headerBase = rowFrame(names, computed, true).materialize();
     Frame headerRow = headerBase;
     Frame table = headerRow;
     for (int i = 0; i < rows.size(); i++) {
-      Frame rowFrame = rowFrame(rendered.get(i), rows.get(i), computed);
+      Frame rowFrame = rowFrame(rendered.get(i), rows.get(i), computed).materialize();
       table = table.appendVertical(rowFrame);
     }
     table = addHeaderSeparator(table, headerRow);
@@ -117,7 +128,7 @@ final class JdbcTableRenderer {
   }
 
   private List<Image[]> renderRows(List<Object[]> rows) {
-    var sizingContext = new codes.ry.xanadu.render.RenderContext(context.style, 0, 0, context.renderService, false);
+    var sizingContext = context.renderContext().withGeometry(0, 0, false);
     List<Image[]> rendered = new ArrayList<>(rows.size());
     for (Object[] row : rows) {
       Image[] images = new Image[row.length];
@@ -0,0 +1,23 @@
+package codes.ry.xanadu.jdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for one SQL statement, including reading its results. */
+@Name("codes.ry.xanadu.SqlExecuted")
+@Label("SQL Executed")
+@Category({"Xanadu", "JDBC"})
+@Description("A SQL statement with the rows it returned or updated")
+final class SqlExecuted extends jdk.jfr.Event {
+  // The statement's first keyword, upper-cased.
+  @Label("Statement Kind")
+  String kind;
+
+  @Label("Rows")
+  long rows;
+
+  @Label("Fetch Size")
+  int fetchSize;
+}
@@ -9,6 +9,7 @@ import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
 import codes.ry.xanadu.command.CommandResult;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.Job;
 import codes.ry.xanadu.render.RenderService;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -16,6 +17,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -248,4 +250,30 @@ class JdbcCsvCommandsTest {
     assertTrue(usage.get(0).contains("extract"));
     assertTrue(usage.get(0).contains("table"));
   }
+
+  @Test
+  void killStopsARunningLoadAndRollsItBack() throws Exception {
+    Path csv = tempDir.resolve("big.csv");
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < 200_000; i++) {
+      rows.append(i).append(",name").append(i).append('\n');
+    }
+    Files.writeString(csv, rows);
+    Command load =
+        commands.commandFor(
+            new CommandInput(
+                "load test_table " + csv + " --batch=100",
+                "load",
+                List.of("test_table", csv.toString(), "--batch=100")));
+    Job job = context.jobs().start("load test_table", load, context);
+    job.kill();
+    assertTrue(job.await(10_000));
+    assertEquals(Job.State.KILLED, job.state());
+    try (ResultSet rs =
+        connection.createStatement().executeQuery("SELECT COUNT(*) FROM test_table")) {
+      rs.next();
+      assertEquals(0, rs.getInt(1));
+    }
+    assertTrue(connection.getAutoCommit());
+  }
 }
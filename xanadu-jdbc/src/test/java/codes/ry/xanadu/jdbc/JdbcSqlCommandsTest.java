@@ -8,8 +8,11 @@ import codes.ry.xanadu.Style;
 import codes.ry.xanadu.command.Command;
 import codes.ry.xanadu.command.CommandContext;
 import codes.ry.xanadu.command.CommandInput;
+import codes.ry.xanadu.command.CommandParser;
+import codes.ry.xanadu.command.CommandProvider;
 import codes.ry.xanadu.command.CommandResult;
 import codes.ry.xanadu.command.CommandService;
+import codes.ry.xanadu.command.NamedCommandProvider;
 import codes.ry.xanadu.render.RenderService;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -133,6 +136,29 @@ class JdbcSqlCommandsTest {
     assertTrue(rendered.contains("Bob"));
   }
 
+  @Test
+  void pipedSelectEmitsRowsInsteadOfATable() throws Exception {
+    connection.createStatement().execute("CREATE TABLE piped (id INT, name VARCHAR(50))");
+    connection.createStatement().execute("INSERT INTO piped VALUES (1, 'Alice'), (2, 'Bob')");
+    java.util.List<Object> rows = new java.util.ArrayList<>();
+    CommandProvider collect =
+        new NamedCommandProvider("collect") {
+          @Override
+          public Command commandFor(CommandInput input) {
+            return ctx -> {
+              ctx.upstream().forEach(rows::add);
+              return CommandResult.SUCCESS;
+            };
+          }
+        };
+    context.setCommandService(new CommandService(List.of(commands, collect)));
+    CommandInput input = CommandParser.parse("select id, name from piped order by id | collect");
+    CommandResult result = context.commandService().find(input).get().execute(context);
+    assertEquals(CommandResult.SUCCESS, result);
+    assertEquals(List.of(List.of(1, "Alice"), List.of(2, "Bob")), rows);
+    assertTrue(output.toString().isEmpty());
+  }
+
   @Test
   void updateTableExecutesSuccessfully() throws Exception {
     // Setup test data